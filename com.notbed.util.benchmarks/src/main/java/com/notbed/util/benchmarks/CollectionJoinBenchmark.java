@@ -0,0 +1,67 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.mass.CollectionUtil;
+
+/**
+ * {@link CollectionUtil#join(java.util.Collection, com.notbed.util.mass.IStringEvaluator, String)}
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionJoinBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	private int size;
+
+	@Param({ ",", ", ", " | " })
+	private String separator;
+
+	private List<Item> items;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		items = Item.create(size, 0);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public String join() {
+		return CollectionUtil.join(items, Item.NAME, separator);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public StringBuilder joinIntoBuilder() {
+		return CollectionUtil.join(new StringBuilder(), items, Item.NAME, separator, "");
+	}
+}
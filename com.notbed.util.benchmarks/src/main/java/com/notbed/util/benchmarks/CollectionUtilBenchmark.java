@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.mass.CollectionUtil;
+import com.notbed.util.mass.DuplicateKeyException;
+
+/**
+ * {@link CollectionUtil#createCollection(Collection, com.notbed.util.mass.IEvaluator, Collection, boolean)} and the batching methods
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionUtilBenchmark {
+
+	@Param({ "100", "10000", "1000000" })
+	private int size;
+
+	@Param({ "0", "0.1", "0.5" })
+	private double dupeRatio;
+
+	private List<Item> items;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		items = Item.create(size, dupeRatio);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public List<Integer> createCollectionAllowDupes() throws DuplicateKeyException {
+		return CollectionUtil.createCollection(items, Item.KEY, new ArrayList<Integer>(), true);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public List<Integer> createCollectionInChunks() throws DuplicateKeyException {
+		return CollectionUtil.createCollection(items, Item.BATCH_KEY, new ArrayList<Integer>(), true);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Set<Integer> createSet() {
+		return CollectionUtil.createSet(items, Item.KEY);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public List<Collection<Item>> breakCollection() {
+		return CollectionUtil.breakCollection(items, 1000, ArrayList.class);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public List<List<Item>> partition() {
+		return CollectionUtil.partition(items, 1000);
+	}
+}
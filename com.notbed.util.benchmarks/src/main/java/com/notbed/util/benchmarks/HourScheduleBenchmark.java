@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.HourSchedule;
+import com.notbed.util.HourSpanIndex;
+import com.notbed.util.UTime;
+import com.notbed.util.UTime.HourSpan;
+
+/**
+ * Checking timestamps against business hours, {@link HourSpan#isDateInside(Date)} against {@link HourSpanIndex} and the precompiled {@link HourSchedule}.<br>
+ * The *AcrossTransition cases alternate between timestamps on both sides of a daylight saving transition, a cache of the current offset period misses on every one of them.
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HourScheduleBenchmark {
+
+	private static final int TIMESTAMPS = 1 << 12;
+	private static final TimeZone DST_ZONE = TimeZone.getTimeZone("Europe/Bucharest");
+	private static final long AUTUMN_TRANSITION = 1382835600000L; // 2013-10-27 01:00 UTC
+
+	@Param({ "1", "4", "16" })
+	private int spanCount;
+
+	private HourSpan[] spans;
+	private HourSpanIndex index;
+	private HourSchedule schedule;
+	private HourSchedule dstSchedule;
+	private long[] timestamps;
+	private long[] acrossTransition;
+	private Date[] dates;
+	private int next;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		TimeZone zone = TimeZone.getDefault();
+		spans = new HourSpan[spanCount];
+		for (int i = 0; i < spanCount; i++) {
+			int start = i * (24 * 60 / spanCount);
+			spans[i] = new HourSpan(format(start), format(start + 45), false);
+		}
+		index = new HourSpanIndex(spans);
+		schedule = new HourSchedule(zone, index);
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		timestamps = new long[TIMESTAMPS];
+		dates = new Date[TIMESTAMPS];
+		for (int i = 0; i < TIMESTAMPS; i++) {
+			timestamps[i] = now + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(365));
+			dates[i] = new Date(timestamps[i]);
+		}
+		dstSchedule = new HourSchedule(DST_ZONE, index);
+		acrossTransition = new long[TIMESTAMPS];
+		for (int i = 0; i < TIMESTAMPS; i++) {
+			long distance = 1 + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(30));
+			acrossTransition[i] = (i & 1) == 0 ? AUTUMN_TRANSITION - distance : AUTUMN_TRANSITION + distance;
+		}
+	}
+
+	/**
+	 * @param minutes
+	 * @return
+	 */
+	private static String format(int minutes) {
+		int minute = minutes % 60;
+		return (minutes / 60 % 24) + ":" + (minute < 10 ? "0" : "") + minute;
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public boolean isDateInsideAnySpan() {
+		Date date = dates[next++ & (TIMESTAMPS - 1)];
+		for (HourSpan span : spans) {
+			if (span.isDateInside(date)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public boolean indexIsDateInside() {
+		return index.isDateInside(dates[next++ & (TIMESTAMPS - 1)]);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public boolean scheduleIsInside() {
+		return schedule.isInside(timestamps[next++ & (TIMESTAMPS - 1)]);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public boolean indexIsInsideAcrossTransition() {
+		return index.isMinuteInside(UTime.minuteOfDay(acrossTransition[next++ & (TIMESTAMPS - 1)], DST_ZONE));
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public boolean scheduleIsInsideAcrossTransition() {
+		return dstSchedule.isInside(acrossTransition[next++ & (TIMESTAMPS - 1)]);
+	}
+}
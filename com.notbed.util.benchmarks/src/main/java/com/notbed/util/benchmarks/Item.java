@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.notbed.util.mass.BatchEvaluator;
+import com.notbed.util.mass.IEvaluator;
+import com.notbed.util.mass.IIntEvaluator;
+import com.notbed.util.mass.IStringEvaluator;
+
+/**
+ * Benchmark input, a bean with a key that repeats for a part of the items
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+final class Item {
+
+	static final IEvaluator<Item, Integer> KEY = new IEvaluator<Item, Integer>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+		 */
+		@Override
+		public Integer evaluate(Item obj) {
+			return obj.key;
+		}
+	};
+
+	static final BatchEvaluator<Item, Integer> BATCH_KEY = new BatchEvaluator<Item, Integer>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IBatchEvaluator#evaluateAll(java.util.List, java.util.List)
+		 */
+		@Override
+		public void evaluateAll(List<? extends Item> in, List<? super Integer> out) {
+			for (Item item : in) {
+				out.add(item.key);
+			}
+		}
+	};
+
+	static final IIntEvaluator<Item> INT_KEY = new IIntEvaluator<Item>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IIntEvaluator#evaluate(java.lang.Object)
+		 */
+		@Override
+		public int evaluate(Item obj) {
+			return obj.key.intValue();
+		}
+	};
+
+	static final IStringEvaluator<Item> NAME = new IStringEvaluator<Item>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IStringEvaluator#evaluate(java.lang.Object)
+		 */
+		@Override
+		public String evaluate(Item obj) {
+			return obj.name;
+		}
+	};
+
+	private final Integer key;
+	private final String name;
+
+	/**
+	 * @param key
+	 */
+	private Item(int key) {
+		this.key = key;
+		this.name = "item-" + key;
+	}
+
+	/**
+	 * @param size
+	 * @param dupeRatio the fraction of the items whose key was already used by another item
+	 * @return the items, shuffled with a fixed seed
+	 */
+	static List<Item> create(int size, double dupeRatio) {
+		int distinct = Math.max(1, (int) Math.round(size * (1 - dupeRatio)));
+		List<Item> items = new ArrayList<Item>(size);
+		for (int i = 0; i < size; i++) {
+			items.add(new Item(i % distinct));
+		}
+		Collections.shuffle(items, new Random(42));
+		return items;
+	}
+}
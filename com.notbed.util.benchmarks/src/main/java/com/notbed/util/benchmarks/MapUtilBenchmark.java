@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.mass.DuplicateKeyException;
+import com.notbed.util.mass.GroupedMap;
+import com.notbed.util.mass.IntObjectMap;
+import com.notbed.util.mass.MapUtil;
+
+/**
+ * {@link MapUtil#generateMap(java.util.Collection, com.notbed.util.mass.IEvaluator, boolean)} and its variants
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapUtilBenchmark {
+
+	@Param({ "100", "10000", "1000000" })
+	private int size;
+
+	@Param({ "0", "0.1", "0.5" })
+	private double dupeRatio;
+
+	private List<Item> items;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		items = Item.create(size, dupeRatio);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public Map<Integer, Item> generateMap() throws DuplicateKeyException {
+		return MapUtil.generateMap(items, Item.KEY, true);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public Map<Integer, Item> generateMapInChunks() throws DuplicateKeyException {
+		return MapUtil.generateMap(items, Item.BATCH_KEY, true);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public Map<Integer, Item> generateMapParallel() throws DuplicateKeyException {
+		return MapUtil.generateMapParallel(items, Item.KEY, true, true, true);
+	}
+
+	/**
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	@Benchmark
+	public IntObjectMap<Item> generateIntMap() throws DuplicateKeyException {
+		return MapUtil.generateIntMap(items, Item.INT_KEY, true, true);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public GroupedMap<Integer, Item> groupBy() {
+		return MapUtil.groupBy(items, Item.KEY);
+	}
+}
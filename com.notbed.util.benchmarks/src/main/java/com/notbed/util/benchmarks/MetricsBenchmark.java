@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.Metrics;
+import com.notbed.util.MetricsRegistry;
+import com.notbed.util.mass.CollectionUtil;
+import com.notbed.util.mass.MapUtil;
+
+/**
+ * Cost of the {@link Metrics} instrumentation, switched off and on, every combination runs in its own fork
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+	@Param({ "false", "true" })
+	private boolean enabled;
+
+	@Param({ "100", "10000" })
+	private int size;
+
+	private List<Item> items;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		items = Item.create(size, 0);
+		Metrics.install(enabled ? new MetricsRegistry() : null);
+	}
+
+	/**
+	 *
+	 */
+	@TearDown
+	public void tearDown() {
+		Metrics.install(null);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Map<Integer, Item> generateMap() {
+		return MapUtil.generateMap(items, Item.KEY);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public List<String> createList() {
+		return CollectionUtil.createList(items, Item.NAME);
+	}
+}
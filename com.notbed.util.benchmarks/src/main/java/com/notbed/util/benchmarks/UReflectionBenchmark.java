@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.UReflection;
+
+/**
+ * Scanning the commons-logging jar, with the jar index cached (warm) or dropped before every scan (cold)
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UReflectionBenchmark {
+
+	private static final Log LOG = LogFactory.getLog(UReflectionBenchmark.class);
+
+	@Param({ "true", "false" })
+	private boolean cached;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		UReflection.dropScanCache();
+	}
+
+	/**
+	 *
+	 */
+	private void prepare() {
+		if (!cached) {
+			UReflection.dropScanCache();
+		}
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Class[] tryLoadClasses() {
+		prepare();
+		return UReflection.tryLoadClasses(LogFactory.class, LOG);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Class[] annotatedReflective() {
+		prepare();
+		return UReflection.tryGetClassesWithAnnotation(LogFactory.class, LogFactory.class.getPackage().getName(), Deprecated.class, false, LOG);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Class[] annotatedBytecode() {
+		prepare();
+		return UReflection.tryGetClassesWithAnnotation(LogFactory.class, LogFactory.class.getPackage().getName(), Deprecated.class, true, LOG);
+	}
+}
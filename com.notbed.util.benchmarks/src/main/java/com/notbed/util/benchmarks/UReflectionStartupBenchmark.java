@@ -0,0 +1,217 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.UReflection;
+
+/**
+ * Startup cost of finding the annotated classes of a large generated jar, loading every class and asking it (readBytecode false)
+ * against reading the annotations from the class files and loading only the annotated ones (readBytecode true).<br>
+ * Every fork measures one scan, in a fresh JVM with a fresh class loader over the jar.
+ * One class in {@link #ANNOTATED_EVERY} carries {@link Marker}, the class after it inherits it.
+ * @author Alexandru Bledea
+ * @since Dec 23, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class UReflectionStartupBenchmark {
+
+	private static final Log LOG = LogFactory.getLog(UReflectionStartupBenchmark.class);
+
+	private static final String PACKAGE = "com.notbed.generated";
+	private static final String ANCHOR = "Anchor";
+	private static final int ANNOTATED_EVERY = 25;
+	private static final int PADDING_CONSTANTS = 40;
+
+	@Param({ "false", "true" })
+	private boolean readBytecode;
+
+	@Param({ "3000" })
+	private int classes;
+
+	private File jar;
+	private URLClassLoader classLoader;
+	private Class anchor;
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Dec 23, 2013
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	@Inherited
+	public static @interface Marker {
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void createJar() throws IOException {
+		jar = File.createTempFile("notbed-startup", ".jar");
+		String packageSlash = PACKAGE.replace('.', '/') + "/";
+		String marker = "L" + Marker.class.getName().replace('.', '/') + ";";
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			write(out, packageSlash + ANCHOR, "java/lang/Object", null);
+			for (int i = 0; i < classes; i++) {
+				String superName = i % ANNOTATED_EVERY == 1 ? packageSlash + className(i - 1) : "java/lang/Object";
+				write(out, packageSlash + className(i), superName, i % ANNOTATED_EVERY == 0 ? marker : null);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Setup(Level.Iteration)
+	public void openClassLoader() throws Exception {
+		UReflection.dropScanCache();
+		classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, UReflectionStartupBenchmark.class.getClassLoader());
+		anchor = Class.forName(PACKAGE + "." + ANCHOR, false, classLoader);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@TearDown(Level.Iteration)
+	public void closeClassLoader() throws IOException {
+		anchor = null;
+		classLoader.close();
+	}
+
+	/**
+	 *
+	 */
+	@TearDown(Level.Trial)
+	public void deleteJar() {
+		jar.delete();
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public Class[] annotatedClasses() {
+		Class[] annotated = UReflection.tryGetClassesWithAnnotation(anchor, PACKAGE, Marker.class, readBytecode, LOG);
+		if (annotated.length != (classes + ANNOTATED_EVERY - 1) / ANNOTATED_EVERY * 2 - (classes % ANNOTATED_EVERY == 1 ? 1 : 0)) {
+			throw new IllegalStateException("Found " + annotated.length + " annotated classes");
+		}
+		return annotated;
+	}
+
+	/**
+	 * @param i
+	 * @return
+	 */
+	private static String className(int i) {
+		return "Generated" + i;
+	}
+
+	/**
+	 * @param out
+	 * @param name
+	 * @param superName
+	 * @param annotation the descriptor of a runtime annotation of the class, can be null
+	 * @throws IOException
+	 */
+	private static void write(JarOutputStream out, String name, String superName, String annotation) throws IOException {
+		out.putNextEntry(new ZipEntry(name + ".class"));
+		out.write(classFile(name, superName, annotation));
+		out.closeEntry();
+	}
+
+	/**
+	 * a public class without members, the constant pool is padded to look more like a real class to the readers
+	 * @param name
+	 * @param superName
+	 * @param annotation
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] classFile(String name, String superName, String annotation) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); // minor
+		out.writeShort(52); // java 8
+		int constants = 4 + PADDING_CONSTANTS + (annotation == null ? 0 : 2);
+		out.writeShort(constants + 1);
+		out.writeByte(1); // #1 utf8
+		out.writeUTF(name);
+		out.writeByte(7); // #2 class #1
+		out.writeShort(1);
+		out.writeByte(1); // #3 utf8
+		out.writeUTF(superName);
+		out.writeByte(7); // #4 class #3
+		out.writeShort(3);
+		for (int i = 0; i < PADDING_CONSTANTS; i++) {
+			out.writeByte(1);
+			out.writeUTF(name + ".padding" + i);
+		}
+		int annotationsName = 4 + PADDING_CONSTANTS + 1;
+		if (annotation != null) {
+			out.writeByte(1);
+			out.writeUTF("RuntimeVisibleAnnotations");
+			out.writeByte(1);
+			out.writeUTF(annotation);
+		}
+		out.writeShort(0x0021); // public super
+		out.writeShort(2);
+		out.writeShort(4);
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(0); // methods
+		if (annotation == null) {
+			out.writeShort(0);
+		} else {
+			out.writeShort(1);
+			out.writeShort(annotationsName);
+			out.writeInt(6); // annotation count, type, element value pairs
+			out.writeShort(1);
+			out.writeShort(annotationsName + 1);
+			out.writeShort(0);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+}
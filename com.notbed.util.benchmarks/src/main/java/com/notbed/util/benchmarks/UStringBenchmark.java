@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.UString;
+
+/**
+ * Joining and splitting with literal separators (the fast path) and with regular expressions
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UStringBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	private int pieces;
+
+	/**
+	 * single char, multi char, line break and a regular expression
+	 */
+	@Param({ ",", ", ", "\n", "\\s*\\|\\s*" })
+	private String separator;
+
+	@Param({ "0", "0.5" })
+	private double emptyRatio;
+
+	private List<String> strings;
+	private String text;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		String literal = separator.startsWith("\\") ? " | " : separator;
+		strings = new ArrayList<String>(pieces);
+		int empty = (int) Math.round(pieces * emptyRatio);
+		for (int i = 0; i < pieces; i++) {
+			strings.add(i % pieces < empty && i % 2 == 0 ? " " : " value" + i + " ");
+		}
+		text = UString.join(strings, literal);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public String join() {
+		return UString.join(strings, separator);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public List<String> breakAndTrimLines() {
+		return UString.breakAndTrimLines(text, separator);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public String[] splitAndTrim() {
+		return UString.splitAndTrim(text, separator);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public List<CharSequence> splitViews() {
+		return UString.splitViews(text, separator.startsWith("\\") ? "|" : separator, true);
+	}
+}
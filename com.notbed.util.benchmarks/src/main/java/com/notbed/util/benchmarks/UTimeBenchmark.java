@@ -0,0 +1,53 @@
+/**
+ *
+ */
+package com.notbed.util.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.notbed.util.UTime;
+import com.notbed.util.UTime.HourSpan;
+
+/**
+ * Parsing the times of the {@link HourSpan}s, 24h and 12h, with and without spaces
+ * @author Alexandru Bledea
+ * @since Dec 20, 2013
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UTimeBenchmark {
+
+	@Param({ "9:30", "09 : 30", "12:45pm", "11:05 AM" })
+	private String time;
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public int parseMinuteOfDay() {
+		return UTime.parseMinuteOfDay(time, true);
+	}
+
+	/**
+	 * @return
+	 */
+	@Benchmark
+	public HourSpan createHourSpan() {
+		return new HourSpan(time, "23:59", true);
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the super class and the runtime visible annotations of a class straight from the class file bytes, the class is never loaded.<br>
+ * Only the constant pool and the class attributes are looked at, fields and methods are skipped.
+ * @author Alexandru Bledea
+ * @since Dec 13, 2013
+ */
+final class ClassFileReader {
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes();
+
+	private final byte[] bytes;
+	private final int[] constants;
+	private int position;
+
+	private String superName;
+	private Set<String> annotations = Collections.emptySet();
+
+	/**
+	 * @param bytes
+	 * @throws IOException if this is not a class file
+	 */
+	private ClassFileReader(byte[] bytes) throws IOException {
+		this.bytes = bytes;
+		try {
+			if (readInt() != MAGIC) {
+				throw new IOException("Not a class file");
+			}
+			position += 4; // minor and major version
+			constants = new int[readShort()];
+			readConstants();
+			position += 2; // access flags
+			position += 2; // this class
+			int superIndex = readShort();
+			superName = superIndex == 0 ? null : readUtf8(readShortAt(constants[superIndex]));
+			int interfaces = readShort();
+			position += 2 * interfaces;
+			skipMembers(); // fields
+			skipMembers(); // methods
+			readClassAttributes();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Truncated class file", e);
+		}
+	}
+
+	/**
+	 * @param in the class file, closed by this method
+	 * @return
+	 * @throws IOException
+	 */
+	static ClassFileReader read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 1024));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new ClassFileReader(out.toByteArray());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the internal name of the super class (with slashes), null for {@link Object}
+	 */
+	String getSuperName() {
+		return superName;
+	}
+
+	/**
+	 * @return the descriptors of the runtime visible annotations on the class, like <code>Lcom/notbed/Annotation;</code>
+	 */
+	Set<String> getAnnotations() {
+		return annotations;
+	}
+
+	/**
+	 * @param annotationClass
+	 * @return the descriptor used in the class files for the annotation
+	 */
+	static String descriptor(Class annotationClass) {
+		return "L" + annotationClass.getName().replace('.', '/') + ";";
+	}
+
+	/**
+	 * remembers where every constant starts
+	 * @throws IOException
+	 */
+	private void readConstants() throws IOException {
+		for (int i = 1; i < constants.length; i++) {
+			int tag = bytes[position++];
+			constants[i] = position;
+			switch (tag) {
+			case 1: // utf8
+				position += 2 + readShortAt(position);
+				break;
+			case 7: // class
+			case 8: // string
+			case 16: // method type
+			case 19: // module
+			case 20: // package
+				position += 2;
+				break;
+			case 15: // method handle
+				position += 3;
+				break;
+			case 3: // integer
+			case 4: // float
+			case 9: // field
+			case 10: // method
+			case 11: // interface method
+			case 12: // name and type
+			case 17: // dynamic
+			case 18: // invoke dynamic
+				position += 4;
+				break;
+			case 5: // long
+			case 6: // double
+				position += 8;
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+	}
+
+	/**
+	 * skips the fields or the methods
+	 */
+	private void skipMembers() {
+		int count = readShort();
+		for (int i = 0; i < count; i++) {
+			position += 6; // access flags, name, descriptor
+			skipAttributes();
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void skipAttributes() {
+		int count = readShort();
+		for (int i = 0; i < count; i++) {
+			position += 2; // name
+			int length = readInt();
+			position += length;
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void readClassAttributes() throws IOException {
+		int count = readShort();
+		for (int i = 0; i < count; i++) {
+			int name = readShort();
+			int length = readInt();
+			int end = position + length;
+			if (isUtf8(name, RUNTIME_VISIBLE_ANNOTATIONS)) {
+				int annotationCount = readShort();
+				annotations = new HashSet<String>(annotationCount * 2);
+				for (int j = 0; j < annotationCount; j++) {
+					annotations.add(readAnnotation());
+				}
+			}
+			position = end;
+		}
+	}
+
+	/**
+	 * @return the type of the annotation
+	 * @throws IOException
+	 */
+	private String readAnnotation() throws IOException {
+		String type = readUtf8(readShort());
+		int pairs = readShort();
+		for (int i = 0; i < pairs; i++) {
+			position += 2; // element name
+			skipElementValue();
+		}
+		return type;
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void skipElementValue() throws IOException {
+		int tag = bytes[position++];
+		switch (tag) {
+		case 'e': // enum, type and constant
+			position += 4;
+			break;
+		case '@':
+			readAnnotation();
+			break;
+		case '[':
+			int values = readShort();
+			for (int i = 0; i < values; i++) {
+				skipElementValue();
+			}
+			break;
+		default: // constants and class
+			position += 2;
+		}
+	}
+
+	/**
+	 * @param index
+	 * @param expected
+	 * @return true if the utf8 constant has exactly these bytes, without decoding it
+	 */
+	private boolean isUtf8(int index, byte[] expected) {
+		int offset = constants[index];
+		if (readShortAt(offset) != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (bytes[offset + 2 + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	private String readUtf8(int index) throws IOException {
+		int offset = constants[index];
+		return new DataInputStream(new ByteArrayInputStream(bytes, offset, 2 + readShortAt(offset))).readUTF();
+	}
+
+	/**
+	 * @return
+	 */
+	private int readShort() {
+		int value = readShortAt(position);
+		position += 2;
+		return value;
+	}
+
+	/**
+	 * @param offset
+	 * @return
+	 */
+	private int readShortAt(int offset) {
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * @return
+	 */
+	private int readInt() {
+		int value = (readShortAt(position) << 16) | readShortAt(position + 2);
+		position += 4;
+		return value;
+	}
+}
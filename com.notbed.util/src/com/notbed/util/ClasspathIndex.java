@@ -0,0 +1,237 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable list of the top level classes found on a class path, grouped by package.<br>
+ * It can be written at build time to {@link #LOCATION} and read at runtime with {@link #load(ClassLoader)}, so nothing has to be scanned.<br>
+ * File format, UTF-8 text: a header line, then every package as <code>@package.name</code> followed by the simple names of its classes, one per line.
+ * @author Alexandru Bledea
+ * @since Dec 16, 2013
+ */
+public final class ClasspathIndex {
+
+	public static final String LOCATION = "META-INF/notbed-classes.idx";
+
+	private static final String HEADER = "# notbed classes index 1";
+	private static final char PACKAGE = '@';
+	private static final String CLASS_ENDING = ".class";
+	private static final String DOLLAR = "$";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Map<String, SortedSet<String>> classesByPackage;
+	private final int size;
+
+	/**
+	 * @param classesByPackage package with dots to simple class names
+	 */
+	private ClasspathIndex(Map<String, SortedSet<String>> classesByPackage) {
+		this.classesByPackage = classesByPackage;
+		int count = 0;
+		for (SortedSet<String> classes : classesByPackage.values()) {
+			count += classes.size();
+		}
+		this.size = count;
+	}
+
+	/**
+	 * @param classFiles class file names like <code>com/notbed/util/UTime.class</code>, inner classes are ignored
+	 * @return
+	 */
+	static ClasspathIndex fromClassFiles(Collection<String> classFiles) {
+		Map<String, SortedSet<String>> classesByPackage = new TreeMap<String, SortedSet<String>>();
+		for (String classFile : classFiles) {
+			if (!classFile.endsWith(CLASS_ENDING) || classFile.contains(DOLLAR)) {
+				continue;
+			}
+			int slash = classFile.lastIndexOf('/');
+			String packageName = slash == -1 ? "" : classFile.substring(0, slash).replace('/', '.');
+			add(classesByPackage, packageName, classFile.substring(slash + 1, classFile.length() - CLASS_ENDING.length()));
+		}
+		return new ClasspathIndex(classesByPackage);
+	}
+
+	/**
+	 * @param classesByPackage
+	 * @param packageName
+	 * @param simpleName
+	 */
+	private static void add(Map<String, SortedSet<String>> classesByPackage, String packageName, String simpleName) {
+		SortedSet<String> classes = classesByPackage.get(packageName);
+		if (classes == null) {
+			classes = new TreeSet<String>();
+			classesByPackage.put(packageName, classes);
+		}
+		classes.add(simpleName);
+	}
+
+	/**
+	 * @param packageName the package with dots, empty for the default package
+	 * @param includeSubPackages
+	 * @return the fully qualified names of the classes in the package
+	 */
+	public List<String> getClassNames(String packageName, boolean includeSubPackages) {
+		List<String> names = new ArrayList<String>();
+		if (!includeSubPackages) {
+			addClassNames(names, packageName, classesByPackage.get(packageName));
+			return names;
+		}
+		String prefix = packageName.length() == 0 ? "" : packageName + ".";
+		for (Entry<String, SortedSet<String>> entry : classesByPackage.entrySet()) {
+			String name = entry.getKey();
+			if (name.equals(packageName) || name.startsWith(prefix)) {
+				addClassNames(names, name, entry.getValue());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @param names
+	 * @param packageName
+	 * @param simpleNames
+	 */
+	private static void addClassNames(List<String> names, String packageName, Collection<String> simpleNames) {
+		if (simpleNames == null) {
+			return;
+		}
+		for (String simpleName : simpleNames) {
+			names.add(packageName.length() == 0 ? simpleName : packageName + "." + simpleName);
+		}
+	}
+
+	/**
+	 * @return the packages with dots
+	 */
+	public Set<String> getPackages() {
+		return Collections.unmodifiableSet(classesByPackage.keySet());
+	}
+
+	/**
+	 * @return the number of classes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+		writer.write(HEADER);
+		writer.write('\n');
+		for (Entry<String, SortedSet<String>> entry : classesByPackage.entrySet()) {
+			writer.write(PACKAGE);
+			writer.write(entry.getKey());
+			writer.write('\n');
+			for (String simpleName : entry.getValue()) {
+				writer.write(simpleName);
+				writer.write('\n');
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * @param outputDirectory the root of the class path entry, like <code>target/classes</code>
+	 * @return the written file
+	 * @throws IOException
+	 */
+	public File write(File outputDirectory) throws IOException {
+		File file = new File(outputDirectory, LOCATION);
+		File parent = file.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create " + parent);
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * @param in closed by this method
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClasspathIndex read(InputStream in) throws IOException {
+		Map<String, SortedSet<String>> classesByPackage = new TreeMap<String, SortedSet<String>>();
+		read(in, classesByPackage);
+		return new ClasspathIndex(classesByPackage);
+	}
+
+	/**
+	 * @param in
+	 * @param classesByPackage
+	 * @throws IOException
+	 */
+	private static void read(InputStream in, Map<String, SortedSet<String>> classesByPackage) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+		try {
+			if (!HEADER.equals(reader.readLine())) {
+				throw new IOException("Not a classes index");
+			}
+			String packageName = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0 && line.charAt(0) == PACKAGE) {
+					packageName = line.substring(1);
+				} else if (line.length() > 0) {
+					if (packageName == null) {
+						throw new IOException("Class without a package: " + line);
+					}
+					add(classesByPackage, packageName, line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @param classLoader
+	 * @return all the indexes the class loader can see, merged, or null if there is none
+	 * @throws IOException
+	 */
+	public static ClasspathIndex load(ClassLoader classLoader) throws IOException {
+		Enumeration<URL> resources = classLoader.getResources(LOCATION);
+		if (!resources.hasMoreElements()) {
+			return null;
+		}
+		Map<String, SortedSet<String>> classesByPackage = new TreeMap<String, SortedSet<String>>();
+		while (resources.hasMoreElements()) {
+			read(resources.nextElement().openStream(), classesByPackage);
+		}
+		return new ClasspathIndex(classesByPackage);
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Scans all the roots of a class path, directories and jars, in parallel, one task per root.<br>
+ * Directories are walked with {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}, jars are read through their central directory.<br>
+ * The result can be written as a {@link ClasspathIndex} at build time:<br>
+ * java com.notbed.util.ClasspathScanner target/classes target/classes lib/a.jar ...
+ * @author Alexandru Bledea
+ * @since Dec 16, 2013
+ */
+public final class ClasspathScanner {
+
+	private static final String CLASS_ENDING = ".class";
+
+	private final List<File> roots;
+
+	/**
+	 * @param roots directories and jars
+	 */
+	public ClasspathScanner(Collection<File> roots) {
+		this.roots = Collections.unmodifiableList(new ArrayList<File>(new LinkedHashSet<File>(roots)));
+	}
+
+	/**
+	 * @param classLoader
+	 * @return a scanner over the roots of the class loader and of its parents, or over <code>java.class.path</code> if they are not known
+	 */
+	public static ClasspathScanner forClassLoader(ClassLoader classLoader) {
+		Set<File> roots = new LinkedHashSet<File>();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					File file = toFile(url);
+					if (file != null) {
+						roots.add(file);
+					}
+				}
+			}
+		}
+		String classPath = System.getProperty("java.class.path");
+		if (classPath != null) {
+			for (String entry : classPath.split(File.pathSeparator)) {
+				if (entry.length() > 0) {
+					roots.add(new File(entry).getAbsoluteFile());
+				}
+			}
+		}
+		return new ClasspathScanner(roots);
+	}
+
+	/**
+	 * @return the scanned roots
+	 */
+	public List<File> getRoots() {
+		return roots;
+	}
+
+	/**
+	 * @return
+	 * @throws IOException if a root cannot be read
+	 */
+	public ClasspathIndex scan() throws IOException {
+		return scan(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor runs one task per root
+	 * @return
+	 * @throws IOException if a root cannot be read
+	 */
+	public ClasspathIndex scan(ExecutorService executor) throws IOException {
+		List<Future<Collection<String>>> futures = new ArrayList<Future<Collection<String>>>(roots.size());
+		for (final File root : roots) {
+			futures.add(executor.submit(new Callable<Collection<String>>() {
+
+				/* (non-Javadoc)
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Collection<String> call() throws IOException {
+					return scanRoot(root);
+				}
+			}));
+		}
+		Collection<String> classFiles = new ArrayList<String>();
+		try {
+			for (Future<Collection<String>> future : futures) {
+				classFiles.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while scanning", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("Failed to scan the class path", cause);
+		} finally {
+			for (Future<Collection<String>> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return ClasspathIndex.fromClassFiles(classFiles);
+	}
+
+	/**
+	 * @param root
+	 * @return the class files of the root, relative to it, missing roots have none
+	 * @throws IOException
+	 */
+	static Collection<String> scanRoot(File root) throws IOException {
+		if (root.isDirectory()) {
+			return walk(root.toPath());
+		}
+		if (root.isFile()) {
+			JarClassIndex index = JarClassIndex.of(root);
+			Collection<String> classFiles = new ArrayList<String>();
+			for (String packageSlash : index.getPackages()) {
+				Collections.addAll(classFiles, index.getClassFiles(packageSlash));
+			}
+			return classFiles;
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param root
+	 * @return
+	 * @throws IOException
+	 */
+	private static Collection<String> walk(final Path root) throws IOException {
+		final Collection<String> classFiles = new ArrayList<String>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			/* (non-Javadoc)
+			 * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+			 */
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && file.getFileName().toString().endsWith(CLASS_ENDING)) {
+					classFiles.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			/* (non-Javadoc)
+			 * @see java.nio.file.SimpleFileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
+			 */
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				return FileVisitResult.CONTINUE; // unreadable entries are skipped, like File#listFiles() returning null
+			}
+		});
+		return classFiles;
+	}
+
+	/**
+	 * @param url
+	 * @return the file or null if the url is not a local file
+	 */
+	private static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return new File(url.getPath());
+		}
+	}
+
+	/**
+	 * Writes the index of the roots at build time
+	 * @param args the output directory, followed by the roots to scan
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: ClasspathScanner <output directory> <root>...");
+			System.exit(1);
+		}
+		List<File> roots = new ArrayList<File>();
+		for (int i = 1; i < args.length; i++) {
+			roots.add(new File(args[i]));
+		}
+		ClasspathIndex index = new ClasspathScanner(roots).scan();
+		File file = index.write(new File(args[0]));
+		System.out.println(index.size() + " classes written to " + file);
+	}
+}
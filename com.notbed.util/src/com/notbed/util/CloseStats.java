@@ -0,0 +1,106 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Close counters and latency for one type of resource, see {@link UClose#getCloseStats()}
+ * @author Alexandru Bledea
+ * @since Dec 18, 2013
+ */
+public final class CloseStats {
+
+	private final String type;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param type
+	 */
+	CloseStats(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * @param nanos
+	 * @param failed
+	 */
+	void record(long nanos, boolean failed) {
+		count.incrementAndGet();
+		if (failed) {
+			failures.incrementAndGet();
+		}
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+			// retry
+		}
+	}
+
+	/**
+	 *
+	 */
+	void reset() {
+		count.set(0);
+		failures.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * @return
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return how many closes were attempted, failed ones included
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * @return
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * @return
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return
+	 */
+	public long getAverageNanos() {
+		long closes = count.get();
+		return closes == 0 ? 0 : totalNanos.get() / closes;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return type + ": " + getCount() + " closed, " + getFailureCount() + " failed, avg " + TimeUnit.NANOSECONDS.toMicros(getAverageNanos())
+				+ "us, max " + TimeUnit.NANOSECONDS.toMicros(getMaxNanos()) + "us";
+	}
+}
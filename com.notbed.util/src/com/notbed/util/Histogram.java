@@ -0,0 +1,168 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non negative longs, laid out like an HdrHistogram with two significant digits:
+ * the values below 256 are counted exactly, every power of 2 above is split into 128 buckets, so a bucket is at most 0.8% wide.<br>
+ * Recording costs the same whatever the value: an atomic increment of the bucket, two {@link LongAdder} updates for the count and the sum,
+ * and a compare and set loop each for the min and the max, which only retries while the value is a new extreme.<br>
+ * The percentiles are read from the live counters, they are only exact when nothing is recorded in the meantime.
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public final class Histogram implements IHistogram {
+
+	static final int SUB_BUCKET_BITS = 7;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = 64 - SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(Long.MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong();
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IHistogram#record(long)
+	 */
+	@Override
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long current;
+		while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+			// retry
+		}
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * @param value not negative
+	 * @return the bucket of the value
+	 */
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @param index
+	 * @return the lowest value counted in the bucket
+	 */
+	static long lowestValue(int index) {
+		int bucket = index >>> SUB_BUCKET_BITS;
+		int subBucket = index & (SUB_BUCKETS - 1);
+		return bucket == 0 ? subBucket : (long) (subBucket + SUB_BUCKETS) << (bucket - 1);
+	}
+
+	/**
+	 * @param index
+	 * @return the highest value counted in the bucket
+	 */
+	static long highestValue(int index) {
+		int bucket = index >>> SUB_BUCKET_BITS;
+		return bucket == 0 ? index : lowestValue(index) + (1L << (bucket - 1)) - 1;
+	}
+
+	/**
+	 * @return the count of every bucket
+	 */
+	long[] copyCounts() {
+		long[] copy = new long[counts.length()];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = counts.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value of the bucket where the percentile falls, 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = copyCounts();
+		long total = 0;
+		for (long bucketCount : snapshot) {
+			total += bucketCount;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			cumulative += snapshot[i];
+			if (cumulative >= countAtPercentile) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return how many values were recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the exact smallest value, 0 if nothing was recorded
+	 */
+	public long getMin() {
+		long value = min.get();
+		return value == Long.MAX_VALUE ? 0 : value;
+	}
+
+	/**
+	 * @return the exact largest value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the exact mean
+	 */
+	public double getMean() {
+		long values = count.sum();
+		return values == 0 ? 0 : (double) sum.sum() / values;
+	}
+
+	/**
+	 * sets everything to 0
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		min.set(Long.MAX_VALUE);
+		max.set(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getCount() + " values, mean " + Math.round(getMean()) + ", p50 " + getValueAtPercentile(50) + ", p99 " + getValueAtPercentile(99)
+				+ ", max " + getMax();
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import static com.notbed.util.HourSpanIndex.MINUTES_PER_DAY;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import com.notbed.util.UTime.HourSpan;
+
+/**
+ * Immutable, precompiled set of {@link HourSpan}s in a {@link TimeZone}, made for checking many timestamps against business hours.<br>
+ * The transitions of the zone between {@link #FIRST_YEAR} and {@link #END_YEAR} are tabled once, so a timestamp maps to its minute of the day
+ * with a binary search and arithmetic, whatever the order of the timestamps, outside of those years the zone is asked directly.
+ * The minutes of the day inside the spans are kept in a bitmap.<br>
+ * Immutable, so thread safe without locks.
+ * @author Alexandru Bledea
+ * @since Dec 10, 2013
+ */
+public final class HourSchedule {
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+	private static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+	static final int FIRST_YEAR = 1970;
+	static final int END_YEAR = 2100;
+
+	private final HourSpanIndex index;
+	private final TimeZone zone;
+	private final OffsetTable offsets;
+	private final long[] inside = new long[(MINUTES_PER_DAY + 63) >>> 6];
+
+	/**
+	 * @param zone
+	 * @param spans
+	 */
+	public HourSchedule(TimeZone zone, HourSpan... spans) {
+		this(zone, new HourSpanIndex(spans));
+	}
+
+	/**
+	 * @param zone
+	 * @param spans
+	 */
+	public HourSchedule(TimeZone zone, Collection<HourSpan> spans) {
+		this(zone, new HourSpanIndex(spans));
+	}
+
+	/**
+	 * @param zone
+	 * @param index
+	 */
+	public HourSchedule(TimeZone zone, HourSpanIndex index) {
+		if (zone == null) {
+			throw new IllegalArgumentException("No time zone provided!");
+		}
+		this.zone = (TimeZone) zone.clone();
+		this.index = index;
+		for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+			if (index.isMinuteInside(minute)) {
+				inside[minute >>> 6] |= 1L << minute;
+			}
+		}
+		this.offsets = OffsetTable.of(this.zone, rulesOf(this.zone));
+	}
+
+	/**
+	 * @param zone
+	 * @return the rules of the zone or null if they cannot be trusted to give the same offsets as the zone
+	 */
+	private static ZoneRules rulesOf(TimeZone zone) {
+		try {
+			ZoneRules rules = zone.toZoneId().getRules();
+			return TimeZone.getTimeZone(zone.toZoneId()).hasSameRules(zone) ? rules : null;
+		} catch (RuntimeException e) {
+			return null; // custom zones without a region
+		}
+	}
+
+	/**
+	 * @param epochMillis
+	 * @return true if at least one span contains the timestamp
+	 */
+	public boolean isInside(long epochMillis) {
+		int minute = minuteOfDay(epochMillis);
+		return (inside[minute >>> 6] & (1L << minute)) != 0;
+	}
+
+	/**
+	 * @param date
+	 * @return true if at least one span contains the date
+	 */
+	public boolean isInside(Date date) {
+		if (date == null) {
+			throw new IllegalStateException("No time provided.");
+		}
+		return isInside(date.getTime());
+	}
+
+	/**
+	 * @param epochMillis
+	 * @return for every timestamp, true if at least one span contains it
+	 */
+	public boolean[] areInside(long[] epochMillis) {
+		boolean[] result = new boolean[epochMillis.length];
+		for (int i = 0; i < epochMillis.length; i++) {
+			result[i] = isInside(epochMillis[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * @param epochMillis
+	 * @return the spans containing the timestamp
+	 */
+	public List<HourSpan> spansAt(long epochMillis) {
+		return index.spansAt(minuteOfDay(epochMillis));
+	}
+
+	/**
+	 * @param epochMillis
+	 * @return the minutes since midnight in the time zone of the schedule
+	 */
+	public int minuteOfDay(long epochMillis) {
+		long local = epochMillis + offset(epochMillis);
+		long millisOfDay = local % MILLIS_PER_DAY;
+		if (millisOfDay < 0) {
+			millisOfDay += MILLIS_PER_DAY;
+		}
+		return (int) (millisOfDay / MILLIS_PER_MINUTE);
+	}
+
+	/**
+	 * @param epochMillis
+	 * @return the offset of the zone at the timestamp
+	 */
+	private int offset(long epochMillis) {
+		return offsets.contains(epochMillis) ? offsets.offset(epochMillis) : zone.getOffset(epochMillis);
+	}
+
+	/**
+	 * @return a copy of the time zone
+	 */
+	public TimeZone getTimeZone() {
+		return (TimeZone) zone.clone();
+	}
+
+	/**
+	 * @return
+	 */
+	public HourSpanIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * The offsets of the zone between two instants, sorted by the instant each offset starts at
+	 * @author Alexandru Bledea
+	 * @since Dec 24, 2013
+	 */
+	private static final class OffsetTable {
+
+		private static final OffsetTable EMPTY = new OffsetTable(0, new long[] { 0 }, new int[] { 0 });
+
+		private final long end;
+		private final long[] starts;
+		private final int[] offsets;
+
+		/**
+		 * @param end exclusive
+		 * @param starts the first one is the start of the table, inclusive
+		 * @param offsets
+		 */
+		OffsetTable(long end, long[] starts, int[] offsets) {
+			this.end = end;
+			this.starts = starts;
+			this.offsets = offsets;
+		}
+
+		/**
+		 * @param zone
+		 * @param rules
+		 * @return the table of the offsets, empty if the zone and its rules disagree
+		 */
+		static OffsetTable of(TimeZone zone, ZoneRules rules) {
+			if (rules == null) {
+				return EMPTY;
+			}
+			if (rules.isFixedOffset()) {
+				return new OffsetTable(Long.MAX_VALUE, new long[] { Long.MIN_VALUE }, new int[] { zone.getRawOffset() });
+			}
+			long from = LocalDate.of(FIRST_YEAR, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+			long end = LocalDate.of(END_YEAR, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+			long[] starts = new long[16];
+			int[] offsets = new int[16];
+			int count = 0;
+			long start = from;
+			while (start < end) {
+				ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochMilli(start));
+				long to = next == null ? end : Math.min(end, next.getInstant().toEpochMilli());
+				int offset = zone.getOffset(start);
+				if (zone.getOffset(to - 1) != offset || rules.getOffset(Instant.ofEpochMilli(start)).getTotalSeconds() * 1000 != offset) {
+					return EMPTY; // the zone has a transition the rules don't know about
+				}
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count << 1);
+					offsets = Arrays.copyOf(offsets, count << 1);
+				}
+				starts[count] = start;
+				offsets[count++] = offset;
+				start = to;
+			}
+			return new OffsetTable(end, Arrays.copyOf(starts, count), Arrays.copyOf(offsets, count));
+		}
+
+		/**
+		 * @param epochMillis
+		 * @return
+		 */
+		boolean contains(long epochMillis) {
+			return starts[0] <= epochMillis && epochMillis < end;
+		}
+
+		/**
+		 * @param epochMillis a timestamp the table {@link #contains(long)}
+		 * @return
+		 */
+		int offset(long epochMillis) {
+			int i = Arrays.binarySearch(starts, epochMillis);
+			return offsets[i >= 0 ? i : -i - 2];
+		}
+	}
+}
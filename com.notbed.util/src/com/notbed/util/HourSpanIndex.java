@@ -0,0 +1,186 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import static com.notbed.util.UTime.minuteOfDay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import com.notbed.util.UTime.HourSpan;
+
+/**
+ * Immutable index over a set of {@link HourSpan}s, built with a sweep over the minutes of the day.<br>
+ * Every minute points to the spans that contain it, so "which spans contain this time" and "do any spans overlap" are answered in O(1).<br>
+ * Spans that wrap past midnight are supported, <b>null</b> spans are ignored.
+ * @author Alexandru Bledea
+ * @since Dec 9, 2013
+ */
+public final class HourSpanIndex {
+
+	static final int MINUTES_PER_DAY = 24 * 60;
+
+	private final List<HourSpan> spans;
+	private final List<List<HourSpan>> segments;
+	private final int[] segmentAt = new int[MINUTES_PER_DAY];
+	private final boolean overlapping;
+
+	/**
+	 * @param spans
+	 */
+	public HourSpanIndex(HourSpan... spans) {
+		this(spans == null ? Collections.<HourSpan> emptyList() : Arrays.asList(spans));
+	}
+
+	/**
+	 * @param spans
+	 */
+	public HourSpanIndex(Collection<HourSpan> spans) {
+		List<HourSpan> list = new ArrayList<HourSpan>(spans == null ? 0 : spans.size());
+		if (spans != null) {
+			for (HourSpan span : spans) {
+				if (span != null) {
+					list.add(span);
+				}
+			}
+		}
+		this.spans = Collections.unmodifiableList(list);
+		this.segments = new ArrayList<List<HourSpan>>();
+		this.overlapping = sweep();
+	}
+
+	/**
+	 * walks the minutes of the day, every minute where a span starts or ends begins a new segment
+	 * @return true if a segment has more than one span
+	 */
+	private boolean sweep() {
+		int count = spans.size();
+		long[] starts = new long[count];
+		long[] ends = new long[count]; // the minute after the last one
+		TreeSet<Integer> active = new TreeSet<Integer>(); // by index, so the spans keep their order
+		for (int i = 0; i < count; i++) {
+			HourSpan span = spans.get(i);
+			starts[i] = ((long) span.getStartMinute() << 32) | i;
+			ends[i] = ((long) (span.getEndMinute() + 1) << 32) | i;
+			if (span.isWrapping()) {
+				active.add(i);
+			}
+		}
+		Arrays.sort(starts);
+		Arrays.sort(ends);
+		boolean overlaps = false;
+		int nextStart = 0;
+		int nextEnd = 0;
+		for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+			boolean changed = minute == 0;
+			while (nextEnd < count && (int) (ends[nextEnd] >>> 32) == minute) {
+				active.remove((int) ends[nextEnd++]);
+				changed = true;
+			}
+			while (nextStart < count && (int) (starts[nextStart] >>> 32) == minute) {
+				active.add((int) starts[nextStart++]);
+				changed = true;
+			}
+			if (changed) {
+				List<HourSpan> segment = new ArrayList<HourSpan>(active.size());
+				for (Integer index : active) {
+					segment.add(spans.get(index));
+				}
+				segments.add(Collections.unmodifiableList(segment));
+				overlaps |= segment.size() > 1;
+			}
+			segmentAt[minute] = segments.size() - 1;
+		}
+		return overlaps;
+	}
+
+	/**
+	 * @return true if at least one minute is inside two of the spans
+	 */
+	public boolean hasOverlaps() {
+		return overlapping;
+	}
+
+	/**
+	 * @param minuteOfDay
+	 * @return the spans containing the minute, in the order in which they were given
+	 */
+	public List<HourSpan> spansAt(int minuteOfDay) {
+		return segments.get(segmentAt[checkMinute(minuteOfDay)]);
+	}
+
+	/**
+	 * @param date
+	 * @return the spans containing the time of the date, in the default time zone
+	 */
+	public List<HourSpan> spansAt(Date date) {
+		return spansAt(minuteOfDay(date));
+	}
+
+	/**
+	 * @param minuteOfDay
+	 * @return true if at least one span contains the minute
+	 */
+	public boolean isMinuteInside(int minuteOfDay) {
+		return !spansAt(minuteOfDay).isEmpty();
+	}
+
+	/**
+	 * @param date
+	 * @return true if at least one span contains the time of the date, in the default time zone
+	 */
+	public boolean isDateInside(Date date) {
+		return isMinuteInside(minuteOfDay(date));
+	}
+
+	/**
+	 * @param epochMillis
+	 * @param zone
+	 * @return for every timestamp, true if at least one span contains it
+	 */
+	public boolean[] areInside(long[] epochMillis, TimeZone zone) {
+		boolean[] result = new boolean[epochMillis.length];
+		for (int i = 0; i < epochMillis.length; i++) {
+			result[i] = isMinuteInside(minuteOfDay(epochMillis[i], zone));
+		}
+		return result;
+	}
+
+	/**
+	 * @param epochMillis
+	 * @param zone
+	 * @return for every timestamp, the spans containing it
+	 */
+	public List<List<HourSpan>> spansAt(long[] epochMillis, TimeZone zone) {
+		List<List<HourSpan>> result = new ArrayList<List<HourSpan>>(epochMillis.length);
+		for (long millis : epochMillis) {
+			result.add(spansAt(minuteOfDay(millis, zone)));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the indexed spans
+	 */
+	public List<HourSpan> getSpans() {
+		return spans;
+	}
+
+	/**
+	 * @param minuteOfDay
+	 * @return
+	 */
+	private static int checkMinute(int minuteOfDay) {
+		if (minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY) {
+			throw new IllegalArgumentException("Not a minute of the day: " + minuteOfDay);
+		}
+		return minuteOfDay;
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+/**
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public interface ICounter {
+
+	/**
+	 *
+	 */
+	void increment();
+
+	/**
+	 * @param delta
+	 */
+	void add(long delta);
+
+}
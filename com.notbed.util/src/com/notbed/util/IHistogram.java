@@ -0,0 +1,17 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+/**
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public interface IHistogram {
+
+	/**
+	 * @param value negative values are recorded as 0
+	 */
+	void record(long value);
+
+}
@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+/**
+ * Creates or finds the metrics by name, see {@link Metrics#install(IMetrics)}
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public interface IMetrics {
+
+	/**
+	 * @param name
+	 * @return the same counter for the same name
+	 */
+	ICounter counter(String name);
+
+	/**
+	 * @param name
+	 * @return the same timer for the same name
+	 */
+	ITimer timer(String name);
+
+	/**
+	 * @param name
+	 * @return the same histogram for the same name
+	 */
+	IHistogram histogram(String name);
+
+}
@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+/**
+ * Measures durations in nanoseconds:<br>
+ * long start = timer.start();<br>
+ * ...<br>
+ * timer.stop(start);
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public interface ITimer {
+
+	/**
+	 * @return the value to pass to {@link #stop(long)}
+	 */
+	long start();
+
+	/**
+	 * @param start the value returned by {@link #start()}
+	 */
+	void stop(long start);
+
+	/**
+	 * @param nanos
+	 */
+	void record(long nanos);
+
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Package to class file index of a jar, built from the central directory of the jar, nothing is decompressed.<br>
+ * The indexes are cached per jar and rebuilt only if the modification time or the size of the jar changed.
+ * @author Alexandru Bledea
+ * @since Dec 12, 2013
+ */
+final class JarClassIndex {
+
+	private static final String CLASS_ENDING = ".class";
+	private static final String DOLLAR = "$";
+	private static final String[] NO_CLASSES = new String[0];
+
+	private static final ConcurrentMap<String, JarClassIndex> CACHE = new ConcurrentHashMap<String, JarClassIndex>();
+
+	private final long lastModified;
+	private final long length;
+	private final Map<String, String[]> classesByPackage;
+
+	/**
+	 * @param lastModified
+	 * @param length
+	 * @param classesByPackage
+	 */
+	private JarClassIndex(long lastModified, long length, Map<String, String[]> classesByPackage) {
+		this.lastModified = lastModified;
+		this.length = length;
+		this.classesByPackage = classesByPackage;
+	}
+
+	/**
+	 * @param jar
+	 * @return the index of the jar, from the cache if the jar did not change
+	 * @throws IOException
+	 */
+	static JarClassIndex of(File jar) throws IOException {
+		String key = jar.getAbsolutePath();
+		long lastModified = jar.lastModified();
+		long length = jar.length();
+		JarClassIndex index = CACHE.get(key);
+		if (index != null && index.lastModified == lastModified && index.length == length) {
+			return index;
+		}
+		index = build(jar, lastModified, length);
+		CACHE.put(key, index);
+		return index;
+	}
+
+	/**
+	 * @param jar
+	 * @param lastModified
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 */
+	private static JarClassIndex build(File jar, long lastModified, long length) throws IOException {
+		Map<String, List<String>> packages = new HashMap<String, List<String>>();
+		ZipFile zipFile = new ZipFile(jar);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if (!name.endsWith(CLASS_ENDING) || name.contains(DOLLAR)) {
+					continue;
+				}
+				String packageSlash = name.substring(0, name.lastIndexOf('/') + 1);
+				List<String> classes = packages.get(packageSlash);
+				if (classes == null) {
+					classes = new ArrayList<String>();
+					packages.put(packageSlash, classes);
+				}
+				classes.add(name);
+			}
+		} finally {
+			zipFile.close();
+		}
+		Map<String, String[]> classesByPackage = new HashMap<String, String[]>(packages.size() * 4 / 3 + 1);
+		for (Entry<String, List<String>> entry : packages.entrySet()) {
+			List<String> classes = entry.getValue();
+			classesByPackage.put(entry.getKey(), classes.toArray(new String[classes.size()]));
+		}
+		return new JarClassIndex(lastModified, length, classesByPackage);
+	}
+
+	/**
+	 * @param packageSlash the package with slashes, ending with a slash, empty for the default package
+	 * @return the class files directly in the package, without inner classes
+	 */
+	String[] getClassFiles(String packageSlash) {
+		String[] classes = classesByPackage.get(packageSlash);
+		return classes == null ? NO_CLASSES : classes.clone();
+	}
+
+	/**
+	 * @return the packages with slashes, ending with a slash
+	 */
+	Set<String> getPackages() {
+		return Collections.unmodifiableSet(classesByPackage.keySet());
+	}
+
+	/**
+	 * forgets all the indexes
+	 */
+	static void dropCache() {
+		CACHE.clear();
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+/**
+ * Entry point of the instrumented code, everything goes to the installed {@link IMetrics}.<br>
+ * Nothing is installed by default: the counters, timers and histograms are empty implementations that do not even read the clock,
+ * as long as they are the only ones loaded the JIT inlines them to nothing.<br>
+ * The instrumented methods look their metrics up on every call, so {@link #install(IMetrics)} can switch them on and off at any time:<br>
+ * MetricsRegistry registry = new MetricsRegistry();<br>
+ * Metrics.install(registry);<br>
+ * ...<br>
+ * PercentileDump.write(registry, System.out);
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public final class Metrics {
+
+	private static final ICounter NOOP_COUNTER = new ICounter() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ICounter#increment()
+		 */
+		@Override
+		public void increment() {
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ICounter#add(long)
+		 */
+		@Override
+		public void add(long delta) {
+		}
+	};
+
+	private static final ITimer NOOP_TIMER = new ITimer() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#start()
+		 */
+		@Override
+		public long start() {
+			return 0;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#stop(long)
+		 */
+		@Override
+		public void stop(long start) {
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#record(long)
+		 */
+		@Override
+		public void record(long nanos) {
+		}
+	};
+
+	private static final IHistogram NOOP_HISTOGRAM = new IHistogram() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.IHistogram#record(long)
+		 */
+		@Override
+		public void record(long value) {
+		}
+	};
+
+	/**
+	 * the default, records nothing
+	 */
+	public static final IMetrics NOOP = new IMetrics() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.IMetrics#counter(java.lang.String)
+		 */
+		@Override
+		public ICounter counter(String name) {
+			return NOOP_COUNTER;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.IMetrics#timer(java.lang.String)
+		 */
+		@Override
+		public ITimer timer(String name) {
+			return NOOP_TIMER;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.IMetrics#histogram(java.lang.String)
+		 */
+		@Override
+		public IHistogram histogram(String name) {
+			return NOOP_HISTOGRAM;
+		}
+	};
+
+	private static volatile IMetrics metrics = NOOP;
+
+	/**
+	 *
+	 */
+	private Metrics() {
+	}
+
+	/**
+	 * @param installed null goes back to {@link #NOOP}
+	 */
+	public static void install(IMetrics installed) {
+		metrics = installed == null ? NOOP : installed;
+	}
+
+	/**
+	 * @return the installed metrics
+	 */
+	public static IMetrics get() {
+		return metrics;
+	}
+
+	/**
+	 * @return false if nothing is recorded
+	 */
+	public static boolean isEnabled() {
+		return metrics != NOOP;
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	public static ICounter counter(String name) {
+		return metrics.counter(name);
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	public static ITimer timer(String name) {
+		return metrics.timer(name);
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	public static IHistogram histogram(String name) {
+		return metrics.histogram(name);
+	}
+}
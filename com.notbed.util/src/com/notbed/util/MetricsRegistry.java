@@ -0,0 +1,275 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link IMetrics} that keeps everything in memory, see {@link PercentileDump}.<br>
+ * Reading the clock costs more than most evaluators, so the {@link Timer}s only measure a sample of the calls and estimate their count,
+ * {@link Timer#record(long)} is never sampled. Use a {@link Counter} for exact counts.
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public final class MetricsRegistry implements IMetrics {
+
+	/**
+	 * by default one call in 64 is measured
+	 */
+	public static final int DEFAULT_SAMPLING = 64;
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private final int sampleMask;
+
+	/**
+	 *
+	 */
+	public MetricsRegistry() {
+		this(DEFAULT_SAMPLING);
+	}
+
+	/**
+	 * @param sampling one call in <b>sampling</b> is measured by the timers, a power of 2, 1 measures all of them
+	 */
+	public MetricsRegistry(int sampling) {
+		if (sampling <= 0 || Integer.bitCount(sampling) != 1) {
+			throw new IllegalArgumentException("Not a power of 2: " + sampling);
+		}
+		this.sampleMask = sampling - 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IMetrics#counter(java.lang.String)
+	 */
+	@Override
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter created = new Counter();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IMetrics#timer(java.lang.String)
+	 */
+	@Override
+	public Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			Timer created = new Timer(sampleMask);
+			timer = timers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+			}
+		}
+		return timer;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IMetrics#histogram(java.lang.String)
+	 */
+	@Override
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram created = new Histogram();
+			histogram = histograms.putIfAbsent(name, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return the counters by name
+	 */
+	public Map<String, Counter> getCounters() {
+		return Collections.unmodifiableMap(new TreeMap<String, Counter>(counters));
+	}
+
+	/**
+	 * @return the timers by name
+	 */
+	public Map<String, Timer> getTimers() {
+		return Collections.unmodifiableMap(new TreeMap<String, Timer>(timers));
+	}
+
+	/**
+	 * @return the histograms by name
+	 */
+	public Map<String, Histogram> getHistograms() {
+		return Collections.unmodifiableMap(new TreeMap<String, Histogram>(histograms));
+	}
+
+	/**
+	 * sets all the metrics to 0
+	 */
+	public void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Timer timer : timers.values()) {
+			timer.reset();
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Dec 21, 2013
+	 */
+	public static final class Counter implements ICounter {
+
+		private final LongAdder count = new LongAdder();
+
+		/**
+		 *
+		 */
+		Counter() {
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ICounter#increment()
+		 */
+		@Override
+		public void increment() {
+			count.increment();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ICounter#add(long)
+		 */
+		@Override
+		public void add(long delta) {
+			count.add(delta);
+		}
+
+		/**
+		 * @return
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+
+		/**
+		 *
+		 */
+		void reset() {
+			count.reset();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.valueOf(getCount());
+		}
+	}
+
+	/**
+	 * Measures a sample of the calls in nanoseconds, a call that is not measured costs one random number
+	 * @author Alexandru Bledea
+	 * @since Dec 21, 2013
+	 */
+	public static final class Timer implements ITimer {
+
+		private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+		private final LongAdder recorded = new LongAdder();
+		private final Histogram histogram = new Histogram();
+		private final int sampleMask;
+
+		/**
+		 * @param sampleMask
+		 */
+		Timer(int sampleMask) {
+			this.sampleMask = sampleMask;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#start()
+		 */
+		@Override
+		public long start() {
+			if (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+				return NOT_SAMPLED;
+			}
+			return System.nanoTime();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#stop(long)
+		 */
+		@Override
+		public void stop(long start) {
+			if (start != NOT_SAMPLED) {
+				histogram.record(System.nanoTime() - start);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.ITimer#record(long)
+		 */
+		@Override
+		public void record(long nanos) {
+			recorded.increment();
+			histogram.record(nanos);
+		}
+
+		/**
+		 * @return the estimated number of calls, exact if all of them were measured or recorded
+		 */
+		public long getCount() {
+			long direct = recorded.sum();
+			return (histogram.getCount() - direct) * (sampleMask + 1) + direct;
+		}
+
+		/**
+		 * @return the measured durations in nanoseconds
+		 */
+		public Histogram getHistogram() {
+			return histogram;
+		}
+
+		/**
+		 * @return the count times the mean of the measured durations
+		 */
+		public long getEstimatedTotalNanos() {
+			return Math.round(getCount() * histogram.getMean());
+		}
+
+		/**
+		 *
+		 */
+		void reset() {
+			recorded.reset();
+			histogram.reset();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "~" + getCount() + " calls, " + histogram;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.io.PrintStream;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.notbed.util.MetricsRegistry.Counter;
+import com.notbed.util.MetricsRegistry.Timer;
+
+/**
+ * Writes {@link Histogram}s in the percentile distribution format of HdrHistogram, which its plotting tools read:
+ * a line every 5 ticks per half distance to 100%, then the mean, the standard deviation and the maximum.
+ * @author Alexandru Bledea
+ * @since Dec 21, 2013
+ */
+public final class PercentileDump {
+
+	private static final int TICKS_PER_HALF_DISTANCE = 5;
+
+	/**
+	 *
+	 */
+	private PercentileDump() {
+	}
+
+	/**
+	 * Writes the counters, then every timer in microseconds and every histogram as recorded
+	 * @param registry
+	 * @param out
+	 */
+	public static void write(MetricsRegistry registry, PrintStream out) {
+		for (Entry<String, Counter> entry : registry.getCounters().entrySet()) {
+			out.printf("%s = %d%n", entry.getKey(), entry.getValue().getCount());
+		}
+		double micros = TimeUnit.MICROSECONDS.toNanos(1);
+		for (Entry<String, Timer> entry : registry.getTimers().entrySet()) {
+			Timer timer = entry.getValue();
+			out.printf("%n# %s (us), ~%d calls, estimated total %.3f ms%n", entry.getKey(), timer.getCount(),
+					timer.getEstimatedTotalNanos() / (micros * 1000));
+			write(timer.getHistogram(), micros, out);
+		}
+		for (Entry<String, Histogram> entry : registry.getHistograms().entrySet()) {
+			out.printf("%n# %s%n", entry.getKey());
+			write(entry.getValue(), 1, out);
+		}
+	}
+
+	/**
+	 * @param histogram
+	 * @param valueUnitScalingRatio the values are divided by it, 1000 writes nanoseconds as microseconds
+	 * @param out
+	 */
+	public static void write(Histogram histogram, double valueUnitScalingRatio, PrintStream out) {
+		long[] counts = histogram.copyCounts();
+		long total = 0;
+		double sumOfSquares = 0;
+		double mean = histogram.getMean();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				total += counts[i];
+				double deviation = (Histogram.lowestValue(i) + Histogram.highestValue(i)) / 2d - mean;
+				sumOfSquares += deviation * deviation * counts[i];
+			}
+		}
+		long max = histogram.getMax();
+		out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+		if (total != 0) {
+			int index = 0;
+			long cumulative = counts[0];
+			for (double percentile = 0;; percentile += step(percentile)) {
+				long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+				while (cumulative < countAtPercentile) {
+					cumulative += counts[++index];
+				}
+				double value = Math.min(Histogram.highestValue(index), max) / valueUnitScalingRatio;
+				if (cumulative >= total) {
+					out.printf("%12.3f %2.12f %10d%n", value, 1d, cumulative);
+					break;
+				}
+				out.printf("%12.3f %2.12f %10d %14.2f%n", value, percentile / 100, cumulative, 1 / (1 - percentile / 100));
+			}
+		}
+		out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean / valueUnitScalingRatio,
+				(total == 0 ? 0 : Math.sqrt(sumOfSquares / total)) / valueUnitScalingRatio);
+		out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / valueUnitScalingRatio, total);
+		out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", Histogram.BUCKETS, Histogram.SUB_BUCKETS);
+	}
+
+	/**
+	 * @param percentile
+	 * @return the distance to the next reported percentile, the closer to 100 the smaller
+	 */
+	private static double step(double percentile) {
+		long halfDistance = 1L << ((int) (Math.log(100 / (100 - percentile)) / Math.log(2)) + 1);
+		return 100d / (halfDistance * TICKS_PER_HALF_DISTANCE);
+	}
+}
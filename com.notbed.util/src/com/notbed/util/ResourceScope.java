@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the resources acquired in a block of code and closes all of them, in reverse order, with {@link UClose#closeAll(List, Executor)}.<br>
+ * try (ResourceScope scope = ResourceScope.open()) {<br>
+ * &nbsp;&nbsp;Connection connection = scope.add(dataSource.getConnection());<br>
+ * &nbsp;&nbsp;ResultSet resultSet = scope.add(scope.add(connection.createStatement()).executeQuery(sql));<br>
+ * }<br>
+ * A fraction of the scopes, see {@link #setLeakSampleRate(double)}, remember where they were opened.
+ * If one of those is garbage collected without being closed, the leak is logged with that stack trace and its resources are closed.<br>
+ * A scope is meant to be used by one thread.
+ * @author Alexandru Bledea
+ * @since Dec 19, 2013
+ */
+public final class ResourceScope implements AutoCloseable {
+
+	private static final ReferenceQueue<ResourceScope> LEAKED = new ReferenceQueue<ResourceScope>();
+	private static final Set<LeakTracker> TRACKED = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+	private static final AtomicLong LEAKS = new AtomicLong();
+
+	private static volatile double leakSampleRate = 0.01;
+
+	private final List<Object> resources = new ArrayList<Object>();
+	private final Executor background;
+	private final LeakTracker tracker;
+	private boolean closed;
+
+	/**
+	 * @param background
+	 * @param tracked
+	 */
+	private ResourceScope(Executor background, boolean tracked) {
+		this.background = background;
+		this.tracker = tracked ? new LeakTracker(this, resources) : null;
+		if (tracker != null) {
+			TRACKED.add(tracker);
+		}
+	}
+
+	/**
+	 * @return a new scope
+	 */
+	public static ResourceScope open() {
+		return open(null);
+	}
+
+	/**
+	 * @param background where the {@link Connection}s are closed, can be null
+	 * @return a new scope
+	 */
+	public static ResourceScope open(Executor background) {
+		reportLeaks();
+		double rate = leakSampleRate;
+		boolean tracked = rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+		return new ResourceScope(background, tracked);
+	}
+
+	/**
+	 * @param resource
+	 * @return the same resource
+	 */
+	public <T> T add(T resource) {
+		if (closed) {
+			throw new IllegalStateException("The scope is closed");
+		}
+		if (resource != null) {
+			resources.add(resource);
+		}
+		return resource;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (tracker != null) {
+			TRACKED.remove(tracker);
+			tracker.clear();
+		}
+		UClose.closeAll(resources, background);
+		resources.clear();
+	}
+
+	/**
+	 * @param rate between 0 (no scope is tracked) and 1 (all the scopes are tracked)
+	 */
+	public static void setLeakSampleRate(double rate) {
+		if (rate < 0 || rate > 1) {
+			throw new IllegalArgumentException("Not a rate: " + rate);
+		}
+		leakSampleRate = rate;
+	}
+
+	/**
+	 * @return
+	 */
+	public static double getLeakSampleRate() {
+		return leakSampleRate;
+	}
+
+	/**
+	 * @return how many tracked scopes were collected without being closed
+	 */
+	public static long getLeakCount() {
+		return LEAKS.get();
+	}
+
+	/**
+	 * logs and closes the tracked scopes that were garbage collected without being closed, also done on every {@link #open()}
+	 */
+	public static void reportLeaks() {
+		LeakTracker leaked;
+		while ((leaked = (LeakTracker) LEAKED.poll()) != null) {
+			if (!TRACKED.remove(leaked)) {
+				continue;
+			}
+			LEAKS.incrementAndGet();
+			LogFactory.getLog(ResourceScope.class).error("A resource scope was not closed, closing its " + leaked.resources.size() + " resources",
+					leaked.openedAt);
+			UClose.closeAll(leaked.resources);
+		}
+	}
+
+	/**
+	 * Holds what is needed to clean up after a scope, never the scope itself
+	 * @author Alexandru Bledea
+	 * @since Dec 19, 2013
+	 */
+	private static final class LeakTracker extends PhantomReference<ResourceScope> {
+
+		private final List<Object> resources;
+		private final Throwable openedAt = new Throwable("Resource scope opened here");
+
+		/**
+		 * @param scope
+		 * @param resources
+		 */
+		LeakTracker(ResourceScope scope, List<Object> resources) {
+			super(scope, LEAKED);
+			this.resources = resources;
+		}
+	}
+}
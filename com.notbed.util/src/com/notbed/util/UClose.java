@@ -7,6 +7,23 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.LogFactory;
 
@@ -18,7 +35,14 @@ import com.notbed.util.mass.VoidEvaluator;
  */
 public class UClose {
 
-	public static VoidEvaluator<Closeable> CLOSE_CLOSEABLE = new CloseEvaluator<Closeable>() {
+	/**
+	 * prefix of the {@link Metrics} timers, <code>UClose.Connection</code>, and failure counters, <code>UClose.Connection.failures</code>
+	 */
+	public static final String METRICS_PREFIX = "UClose.";
+
+	private static final ConcurrentMap<String, CloseStats> STATS = new ConcurrentHashMap<String, CloseStats>();
+
+	public static VoidEvaluator<Closeable> CLOSE_CLOSEABLE = new CloseEvaluator<Closeable>("Closeable") {
 
 		/* (non-Javadoc)
 		 * @see com.notbed.util.UClose.CloseEvaluator#close(java.lang.Object)
@@ -29,45 +53,173 @@ public class UClose {
 		}
 	};
 
-	public static VoidEvaluator<ResultSet> CLOSE_RESULT_SET = new CloseEvaluator<ResultSet>() {
+	public static VoidEvaluator<ResultSet> CLOSE_RESULT_SET = new CloseEvaluator<ResultSet>("ResultSet") {
 
 		/* (non-Javadoc)
 		 * @see com.notbed.util.UClose.CloseEvaluator#close(java.lang.Object)
 		 */
 		@Override
 		protected void close(ResultSet object) throws Exception {
-			if (!object.isClosed()) {
-				object.close();
-			}
+			object.close(); // no op if already closed
 		}
 	};
 
-	public static VoidEvaluator<Statement> CLOSE_STATEMENT = new CloseEvaluator<Statement>() {
+	public static VoidEvaluator<Statement> CLOSE_STATEMENT = new CloseEvaluator<Statement>("Statement") {
 
 		/* (non-Javadoc)
 		 * @see com.notbed.util.UClose.CloseEvaluator#close(java.lang.Object)
 		 */
 		@Override
 		protected void close(Statement object) throws Exception {
-			if (!object.isClosed()) {
-				object.close();
-			}
+			object.close(); // no op if already closed
 		}
 	};
 
-	public static VoidEvaluator<Connection> CLOSE_CONNECTION = new CloseEvaluator<Connection>() {
+	public static VoidEvaluator<Connection> CLOSE_CONNECTION = new CloseEvaluator<Connection>("Connection") {
 
 		/* (non-Javadoc)
 		 * @see com.notbed.util.UClose.CloseEvaluator#close(java.lang.Object)
 		 */
 		@Override
 		protected void close(Connection object) throws Exception {
-			if (!object.isClosed()) {
-				object.close();
-			}
+			object.close(); // no op if already closed
 		}
 	};
 
+	public static VoidEvaluator<AutoCloseable> CLOSE_AUTO_CLOSEABLE = new CloseEvaluator<AutoCloseable>("AutoCloseable") {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.UClose.CloseEvaluator#close(java.lang.Object)
+		 */
+		@Override
+		protected void close(AutoCloseable object) throws Exception {
+			object.close();
+		}
+	};
+
+	/**
+	 * Closes the resources in reverse order, the last acquired one is closed first
+	 * @param resources {@link ResultSet}s, {@link Statement}s, {@link Connection}s or other {@link AutoCloseable}s, in the order they were acquired
+	 */
+	public static void closeAll(List<?> resources) {
+		closeAll(resources, null);
+	}
+
+	/**
+	 * Closes the resources in reverse order, the last acquired one is closed first.<br>
+	 * The {@link Connection}s, usually the slow ones, are closed on the <b>background</b> executor after the others, in the same order.
+	 * If the executor rejects them, they are closed on the current thread.
+	 * @param resources {@link ResultSet}s, {@link Statement}s, {@link Connection}s or other {@link AutoCloseable}s, in the order they were acquired
+	 * @param background can be null, see {@link #newCloseExecutor(int, int)}
+	 */
+	public static void closeAll(List<?> resources, Executor background) {
+		if (resources == null || resources.isEmpty()) {
+			return;
+		}
+		final List<Object> deferred = new ArrayList<Object>();
+		for (ListIterator<?> iterator = resources.listIterator(resources.size()); iterator.hasPrevious();) {
+			Object resource = iterator.previous();
+			if (background != null && resource instanceof Connection) {
+				deferred.add(resource);
+			} else {
+				close(resource);
+			}
+		}
+		if (deferred.isEmpty()) {
+			return;
+		}
+		try {
+			background.execute(new Runnable() {
+
+				/* (non-Javadoc)
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					for (Object resource : deferred) {
+						close(resource);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			for (Object resource : deferred) {
+				close(resource);
+			}
+		}
+	}
+
+	/**
+	 * @param resource closed with the evaluator matching its type
+	 */
+	private static void close(Object resource) {
+		if (resource instanceof ResultSet) {
+			CLOSE_RESULT_SET.evaluate((ResultSet) resource);
+		} else if (resource instanceof Statement) {
+			CLOSE_STATEMENT.evaluate((Statement) resource);
+		} else if (resource instanceof Connection) {
+			CLOSE_CONNECTION.evaluate((Connection) resource);
+		} else if (resource instanceof Closeable) {
+			CLOSE_CLOSEABLE.evaluate((Closeable) resource);
+		} else if (resource instanceof AutoCloseable) {
+			CLOSE_AUTO_CLOSEABLE.evaluate((AutoCloseable) resource);
+		} else if (resource != null) {
+			LogFactory.getLog(UClose.class).error("Don't know how to close " + resource.getClass().getName());
+		}
+	}
+
+	/**
+	 * Executor for {@link #closeAll(List, Executor)} with daemon threads and a bounded queue,
+	 * when the queue is full the closes run on the calling thread, which slows down the producers instead of piling up connections.
+	 * Once the executor is shut down, the closes also run on the calling thread.
+	 * @param threads
+	 * @param queueSize
+	 * @return
+	 */
+	public static ExecutorService newCloseExecutor(int threads, int queueSize) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					/* (non-Javadoc)
+					 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+					 */
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "notbed-close-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new RejectedExecutionHandler() {
+
+					/* (non-Javadoc)
+					 * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+					 */
+					@Override
+					public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+						r.run(); // unlike CallerRunsPolicy, also after shutdown, the connections must be closed anyway
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * @return the close statistics by type of resource
+	 */
+	public static Map<String, CloseStats> getCloseStats() {
+		return Collections.unmodifiableMap(new TreeMap<String, CloseStats>(STATS));
+	}
+
+	/**
+	 * sets all the close statistics to 0
+	 */
+	public static void resetCloseStats() {
+		for (CloseStats stats : STATS.values()) {
+			stats.reset();
+		}
+	}
+
 	/**
 	 * @author Alexandru Bledea
 	 * @since Sep 22, 2013
@@ -75,16 +227,41 @@ public class UClose {
 	 */
 	private static abstract class CloseEvaluator<O> extends VoidEvaluator<O> {
 
+		private final CloseStats stats;
+		private final String timerName;
+		private final String failureCounterName;
+
+		/**
+		 * @param type the name under which the statistics are kept
+		 */
+		CloseEvaluator(String type) {
+			CloseStats created = new CloseStats(type);
+			CloseStats existing = STATS.putIfAbsent(type, created);
+			this.stats = existing == null ? created : existing;
+			this.timerName = METRICS_PREFIX + type;
+			this.failureCounterName = timerName + ".failures";
+		}
+
 		/* (non-Javadoc)
 		 * @see com.notbed.util.VoidEvaluator#evaluateNoResult(java.lang.Object)
 		 */
 		@Override
 		public void evaluateNoResult(O obj) {
 			if (obj != null) {
+				long start = System.nanoTime();
+				boolean failed = false;
 				try {
 					close(obj);
 				} catch (Throwable t) {
+					failed = true;
 					LogFactory.getLog(getClass()).error("Failed to close", t);
+				} finally {
+					long nanos = System.nanoTime() - start;
+					stats.record(nanos, failed);
+					Metrics.timer(timerName).record(nanos);
+					if (failed) {
+						Metrics.counter(failureCounterName).increment();
+					}
 				}
 			}
 		};
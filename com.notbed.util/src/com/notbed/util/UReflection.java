@@ -4,17 +4,28 @@
 package com.notbed.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Inherited;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.logging.Log;
 
@@ -28,6 +39,9 @@ public class UReflection {
 	private static final String DOT = ".";
 	private static final String DOLLAR = "$";
 	private static final String CLASS_ENDING = ".class";
+	private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+
+	private static final Map<ClassLoader, ClasspathIndex> INDEXES = new WeakHashMap<ClassLoader, ClasspathIndex>();
 
 	/**
 	 * @param relevantClass
@@ -57,6 +71,88 @@ public class UReflection {
 		return classes.toArray(new Class[classes.size()]);
 	}
 
+	/**
+	 * Same as {@link #tryGetClassesWithAnnotation(Class, String, Class, Log)}, but if <b>readBytecode</b> the annotations are read from the class files
+	 * and only the annotated classes are loaded.
+	 * @param relevantClass
+	 * @param packageName
+	 * @param annotationClass
+	 * @param readBytecode
+	 * @param log
+	 * @return
+	 */
+	public static Class[] tryGetClassesWithAnnotation(Class relevantClass, String packageName, Class annotationClass, boolean readBytecode, Log log) {
+		if (!readBytecode) {
+			return tryGetClassesWithAnnotation(relevantClass, packageName, annotationClass, log);
+		}
+		if (relevantClass == null || packageName == null) {
+			log.debug("No class or package provided.");
+			return new Class[0];
+		}
+		String packageSlash = toPackageSlash(packageName);
+		ClassLoader classLoader = relevantClass.getClassLoader();
+		Map<String, File> filesFromClassLoader = Collections.emptyMap();
+		Collection<String> classFiles = new HashSet();
+		String[] indexed = getIndexedClasses(classLoader, packageSlash, log);
+		if (indexed != null) {
+			classFiles.addAll(Arrays.asList(indexed));
+		} else {
+			filesFromClassLoader = getClassFilesFromClassLoader(classLoader, packageSlash, log);
+			classFiles.addAll(Arrays.asList(getClassesFromJar(relevantClass, packageSlash, log)));
+			classFiles.addAll(filesFromClassLoader.keySet());
+		}
+
+		String descriptor = ClassFileReader.descriptor(annotationClass);
+		boolean inherited = annotationClass.isAnnotationPresent(Inherited.class);
+		ClassFileOpener opener = new ClassFileOpener(getJarFile(relevantClass), filesFromClassLoader, classLoader);
+		Collection<Class> classes = new ArrayList();
+		try {
+			for (String classFile : classFiles) {
+				if (!isInPackage(classFile, packageSlash, false)) {
+					continue;
+				}
+				Boolean annotated = isAnnotated(classFile, descriptor, inherited, opener);
+				if (Boolean.FALSE.equals(annotated)) {
+					continue;
+				}
+				Class class1 = getClass(classFile, packageSlash, false, classLoader, log);
+				if (class1 != null && (annotated != null || class1.isAnnotationPresent(annotationClass))) {
+					classes.add(class1);
+				}
+			}
+		} finally {
+			opener.close(log);
+		}
+		return classes.toArray(new Class[classes.size()]);
+	}
+
+	/**
+	 * @param classFile
+	 * @param descriptor
+	 * @param inherited if we have to look at the super classes too
+	 * @param opener
+	 * @return null if we cannot tell without loading the class
+	 */
+	private static Boolean isAnnotated(String classFile, String descriptor, boolean inherited, ClassFileOpener opener) {
+		try {
+			while (classFile != null) {
+				InputStream in = opener.open(classFile);
+				if (in == null) {
+					return null;
+				}
+				ClassFileReader reader = ClassFileReader.read(in);
+				if (reader.getAnnotations().contains(descriptor)) {
+					return Boolean.TRUE;
+				}
+				String superName = reader.getSuperName();
+				classFile = inherited && superName != null && !JAVA_LANG_OBJECT.equals(superName) ? superName + CLASS_ENDING : null;
+			}
+			return Boolean.FALSE;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * @param relevantClass
 	 * @param log
@@ -86,20 +182,73 @@ public class UReflection {
 			log.debug("No class or package provided.");
 			return new Class[0];
 		}
-		packageName = packageName.replace(DOT, SEPARATOR);
-		if (!packageName.endsWith(SEPARATOR)) {
-			packageName += SEPARATOR;
-		}
+		packageName = toPackageSlash(packageName);
 
 		ClassLoader classLoader = relevantClass.getClassLoader();
-		String[] classesFromJar = getClassesFromJar(relevantClass, log);
+		String[] indexed = getIndexedClasses(classLoader, packageName, log);
+		if (indexed != null) {
+			Collection<Class> classes = getClasses(indexed, false, packageName, classLoader, log);
+			return classes.toArray(new Class[classes.size()]);
+		}
+		String[] classesFromJar = getClassesFromJar(relevantClass, packageName, log);
 		Collection<Class> classes = getClasses(classesFromJar, false, packageName, classLoader, log);
 
-		String[] classesFromClassLoader = getClassesFromClassLoader(relevantClass, log);
+		String[] classesFromClassLoader = getClassesFromClassLoader(classLoader, packageName, log);
 		classes.addAll(getClasses(classesFromClassLoader, false, packageName, classLoader, log));
 		return classes.toArray(new Class[classes.size()]);
 	}
 
+	/**
+	 * @param classLoader
+	 * @param packageSlash
+	 * @param log
+	 * @return the class files of the package from the {@link ClasspathIndex} of the class loader, null if it doesn't have one or it doesn't list the package
+	 */
+	private static String[] getIndexedClasses(ClassLoader classLoader, String packageSlash, Log log) {
+		if (classLoader == null) {
+			return null;
+		}
+		ClasspathIndex index;
+		synchronized (INDEXES) {
+			if (INDEXES.containsKey(classLoader)) {
+				index = INDEXES.get(classLoader);
+			} else {
+				try {
+					index = ClasspathIndex.load(classLoader);
+				} catch (IOException e) {
+					log.error("Cannot read the classes index, scanning instead", e);
+					index = null;
+				}
+				INDEXES.put(classLoader, index);
+			}
+		}
+		if (index == null) {
+			return null;
+		}
+		String packageName = packageSlash.substring(0, packageSlash.length() - 1).replace(SEPARATOR, DOT);
+		if (!index.getPackages().contains(packageName)) {
+			return null; // the indexes come from other jars, the package has to be scanned
+		}
+		List<String> classNames = index.getClassNames(packageName, false);
+		String[] classFiles = new String[classNames.size()];
+		for (int i = 0; i < classFiles.length; i++) {
+			classFiles[i] = classNames.get(i).replace(DOT, SEPARATOR) + CLASS_ENDING;
+		}
+		return classFiles;
+	}
+
+	/**
+	 * @param packageName
+	 * @return the package with slashes, ending with a slash
+	 */
+	private static String toPackageSlash(String packageName) {
+		packageName = packageName.replace(DOT, SEPARATOR);
+		if (!packageName.endsWith(SEPARATOR)) {
+			packageName += SEPARATOR;
+		}
+		return packageName;
+	}
+
 	/**
 	 * @param classNames
 	 * @param includeChildren
@@ -119,18 +268,36 @@ public class UReflection {
 		return classes;
 	}
 
+	/**
+	 * forgets the cached jar indexes and class path indexes, the next scan reads them again
+	 */
+	public static void dropScanCache() {
+		JarClassIndex.dropCache();
+		synchronized (INDEXES) {
+			INDEXES.clear();
+		}
+	}
+
 	/**
 	 * @param classFromJar
+	 * @param packageSlash
 	 * @param log
 	 * @return
 	 */
-	private static String[] getClassesFromJar(Class classFromJar, Log log) {
+	private static String[] getClassesFromJar(Class classFromJar, String packageSlash, Log log) {
 		try {
 			ProtectionDomain protectionDomain = classFromJar.getProtectionDomain();
 			if (protectionDomain != null) {
 				CodeSource codeSource = protectionDomain.getCodeSource();
 				if (codeSource != null) {
-					return getClassesFromJar(codeSource.getLocation(), log);
+					URL location = codeSource.getLocation();
+					File file = toFile(location);
+					if (file == null) {
+						return getClassesFromJar(location, log);
+					}
+					if (file.isFile()) {
+						return JarClassIndex.of(file).getClassFiles(packageSlash);
+					}
 				}
 			}
 		} catch (Exception e) {
@@ -141,6 +308,35 @@ public class UReflection {
 	}
 
 	/**
+	 * @param classFromJar
+	 * @return the jar of the class or null if it doesn't come from a local jar
+	 */
+	private static File getJarFile(Class classFromJar) {
+		ProtectionDomain protectionDomain = classFromJar.getProtectionDomain();
+		CodeSource codeSource = protectionDomain == null ? null : protectionDomain.getCodeSource();
+		File file = codeSource == null ? null : toFile(codeSource.getLocation());
+		return file != null && file.isFile() ? file : null;
+	}
+
+	/**
+	 * @param location
+	 * @return the file or null if the location is not a local file
+	 */
+	private static File toFile(URL location) {
+		if (location == null || !"file".equals(location.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(location.toURI());
+		} catch (URISyntaxException e) {
+			return new File(location.getPath());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * streams the whole jar, for locations that are not local files
 	 * @param location
 	 * @param log
 	 * @return
@@ -180,74 +376,91 @@ public class UReflection {
 	 * @return
 	 */
 	private static Class getClass(String fileName, String packageSlash, boolean includeChildren, ClassLoader classLoader, Log log) {
-
-		if (fileName.endsWith(CLASS_ENDING) && !fileName.contains(DOLLAR)) {
-			if (fileName.startsWith(packageSlash)) {
-				if (!includeChildren) {
-					String searchForChildren = remove(fileName, packageSlash);
-					if (searchForChildren.contains(SEPARATOR)) {
-						return null; // from a sub package
-					}
-				}
-				fileName = remove(fileName, CLASS_ENDING);
-				fileName = replace(fileName, SEPARATOR, DOT);
-				try {
-					return Class.forName(fileName, false, classLoader);
-				} catch (ClassNotFoundException e) {
-					log.warn("Cannot load class " + fileName, e);
-				}
+		if (isInPackage(fileName, packageSlash, includeChildren)) {
+			fileName = remove(fileName, CLASS_ENDING);
+			fileName = replace(fileName, SEPARATOR, DOT);
+			try {
+				return Class.forName(fileName, false, classLoader);
+			} catch (ClassNotFoundException e) {
+				log.warn("Cannot load class " + fileName, e);
 			}
 		}
 		return null;
 	}
 
 	/**
-	 * @param classFromClassLoader
+	 * @param fileName
+	 * @param packageSlash
+	 * @param includeChildren
+	 * @return true if the file is a top level class from the package
+	 */
+	private static boolean isInPackage(String fileName, String packageSlash, boolean includeChildren) {
+		if (!fileName.endsWith(CLASS_ENDING) || fileName.contains(DOLLAR) || !fileName.startsWith(packageSlash)) {
+			return false;
+		}
+		return includeChildren || !remove(fileName, packageSlash).contains(SEPARATOR); // or from a sub package
+	}
+
+	/**
+	 * @param classLoader
+	 * @param packageSlash
 	 * @param log
 	 * @return
 	 */
-	private static String[] getClassesFromClassLoader(Class classFromClassLoader, Log log) {
-		Collection<String> newClasses = new ArrayList();
+	private static String[] getClassesFromClassLoader(ClassLoader classLoader, String packageSlash, Log log) {
+		Collection<String> newClasses = getClassFilesFromClassLoader(classLoader, packageSlash, log).keySet();
+		return newClasses.toArray(new String[newClasses.size()]);
+	}
+
+	/**
+	 * looks in all the directories of the class loader that contain the package, jars are handled by {@link #getClassesFromJar(Class, String, Log)}
+	 * @param classLoader
+	 * @param packageSlash
+	 * @param log
+	 * @return the class files relative to their root, with the files on the disk
+	 */
+	private static Map<String, File> getClassFilesFromClassLoader(ClassLoader classLoader, String packageSlash, Log log) {
+		Map<String, File> newClasses = new LinkedHashMap<String, File>();
 		try {
-			ClassLoader classLoader = classFromClassLoader.getClassLoader();
-			String packageName = classFromClassLoader.getPackage().getName();
-			String path = packageName.replace('.', '/');
+			String path = packageSlash.substring(0, packageSlash.length() - 1);
 			Enumeration<URL> resources = classLoader.getResources(path);
 			List<File> dirs = new ArrayList<File>();
 			while (resources.hasMoreElements()) {
-				dirs.add(new File(resources.nextElement().getFile()));
+				File dir = toFile(resources.nextElement());
+				if (dir != null && dir.isDirectory()) {
+					dirs.add(dir);
+				}
 			}
-			Collection<String> classes = new ArrayList();
 			for (File directory : dirs) {
-				classes.addAll(getAllClasses(directory));
-			}
-			for (String string : classes) {
-				int indexOf = string.lastIndexOf(path);
-				if (indexOf != -1) {
-					newClasses.add(string.substring(indexOf, string.length()));
+				String root = replace(directory.getAbsolutePath(), "\\", "/");
+				for (File file : getAllClasses(directory)) {
+					String string = replace(file.getAbsolutePath(), "\\", "/");
+					newClasses.put(packageSlash + string.substring(root.length() + 1), file);
 				}
 			}
 		} catch (IOException e) {
 			log.error("An error occurred while reading from classloader", e);
 		}
 
-		return newClasses.toArray(new String[newClasses.size()]);
+		return newClasses;
 	}
 
 	/**
 	 * @param dir
 	 * @return
 	 */
-	private static Collection<String> getAllClasses(File dir) {
-		Collection<String> classes = new ArrayList();
+	private static Collection<File> getAllClasses(File dir) {
+		Collection<File> classes = new ArrayList();
 		File[] files = dir.listFiles();
+		if (files == null) {
+			return classes; // not a directory or not readable
+		}
 		for (File file : files) {
 			String name = file.getName();
 			if (file.isDirectory()) {
 				classes.addAll(getAllClasses(file));
 			} else if (file.isFile() && !name.contains(DOLLAR) && name.endsWith(CLASS_ENDING)) {
-				name = replace(file.getAbsolutePath(), "\\", "/");
-				classes.add(name);
+				classes.add(file);
 			}
 		}
 		return classes;
@@ -272,4 +485,63 @@ public class UReflection {
 	private static String remove(String target, String what) {
 		return replace(target, what, "");
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Opens class files without going through the class loader when we know where they are
+	 * @author Alexandru Bledea
+	 * @since Dec 13, 2013
+	 */
+	private static final class ClassFileOpener {
+
+		private final File jar;
+		private final Map<String, File> files;
+		private final ClassLoader classLoader;
+		private ZipFile zipFile;
+
+		/**
+		 * @param jar
+		 * @param files
+		 * @param classLoader
+		 */
+		ClassFileOpener(File jar, Map<String, File> files, ClassLoader classLoader) {
+			this.jar = jar;
+			this.files = files;
+			this.classLoader = classLoader;
+		}
+
+		/**
+		 * @param classFile
+		 * @return the content of the class file or null if it cannot be found
+		 * @throws IOException
+		 */
+		InputStream open(String classFile) throws IOException {
+			File file = files.get(classFile);
+			if (file != null) {
+				return new FileInputStream(file);
+			}
+			if (jar != null) {
+				if (zipFile == null) {
+					zipFile = new ZipFile(jar);
+				}
+				ZipEntry entry = zipFile.getEntry(classFile);
+				if (entry != null) {
+					return zipFile.getInputStream(entry);
+				}
+			}
+			return classLoader.getResourceAsStream(classFile);
+		}
+
+		/**
+		 * @param log
+		 */
+		void close(Log log) {
+			if (zipFile != null) {
+				try {
+					zipFile.close();
+				} catch (IOException e) {
+					log.error("An error occured while trying to close the jar.", e);
+				}
+			}
+		}
+	}
+}
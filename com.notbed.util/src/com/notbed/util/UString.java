@@ -3,8 +3,10 @@
  */
 package com.notbed.util;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -14,6 +16,8 @@ import java.util.List;
  */
 public class UString {
 
+	private static final String REGEX_META_CHARACTERS = ".$|()[]{}^?*+\\";
+
 	/**
 	 * @param s
 	 * @return
@@ -82,17 +86,18 @@ public class UString {
 
 	/**
 	 * @param string
-	 * @param separator
+	 * @param separator a regular expression, same as {@link String#split(String)}
 	 * @return
 	 */
 	public static String[] splitAndTrim(String string, String separator) {
+		if (isLiteral(separator)) {
+			List<String> pieces = splitLiteral(string, separator, true, false);
+			return pieces.toArray(new String[pieces.size()]);
+		}
 		String[] split = string.split(separator);
 		int length = split.length;
 		for (int i = 0; i < length; i++) {
-			String trim = split[0].trim();
-			if (!trim.equals(split[0])) {
-				split[0] = trim;
-			}
+			split[i] = split[i].trim();
 		}
 		return split;
 	}
@@ -130,6 +135,9 @@ public class UString {
 		if (string == null) {
 			string = "";
 		}
+		if (isLiteral(separator)) {
+			return splitLiteral(string, separator, true, !returnEmptyLines);
+		}
 		List<String> nonEmptyStrings = new ArrayList();
 		String[] pieces = string.split(separator);
 		for (String piece : pieces) {
@@ -150,4 +158,132 @@ public class UString {
 		return breakAndTrimLines(string, separator, false);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Splits the string on a literal separator, in a single scan, without regular expressions.<br>
+	 * Gives the same pieces as {@link String#split(String)} would for the same separator, trailing empty pieces are dropped.
+	 * @param string
+	 * @param separator a literal, not a regular expression
+	 * @param trim if the pieces are trimmed
+	 * @param skipEmpty if the pieces that are empty (after trimming) are skipped
+	 * @return
+	 */
+	public static List<String> splitLiteral(String string, String separator, final boolean trim, final boolean skipEmpty) {
+		final List<String> pieces = new ArrayList<String>();
+		final int[] keep = new int[1]; // the pieces up to the last one that was not empty before trimming
+		int count = split(string, separator, false, new ISplitVisitor() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.UString.ISplitVisitor#visit(java.lang.String, int, int)
+			 */
+			@Override
+			public void visit(String source, int from, int to) {
+				String piece = source.substring(from, to);
+				if (trim) {
+					piece = piece.trim();
+				}
+				if (!skipEmpty || !piece.isEmpty()) {
+					pieces.add(piece);
+				}
+				if (from != to) {
+					keep[0] = pieces.size();
+				}
+			}
+		});
+		if (count > 1) {
+			pieces.subList(keep[0], pieces.size()).clear();
+		}
+		return pieces;
+	}
+
+	/**
+	 * Same as {@link #splitLiteral(String, String, boolean, boolean)}, but the pieces are views over the string, nothing is copied
+	 * @param string
+	 * @param separator a literal, not a regular expression
+	 * @param trim if the pieces are trimmed
+	 * @return all the pieces, including the empty ones
+	 */
+	public static List<CharSequence> splitViews(String string, String separator, boolean trim) {
+		final List<CharSequence> pieces = new ArrayList<CharSequence>();
+		split(string, separator, trim, new ISplitVisitor() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.UString.ISplitVisitor#visit(java.lang.String, int, int)
+			 */
+			@Override
+			public void visit(String source, int from, int to) {
+				pieces.add(CharBuffer.wrap(source, from, to));
+			}
+		});
+		return pieces;
+	}
+
+	/**
+	 * Splits the string on a literal separator and hands the bounds of every piece to the <b>visitor</b>, nothing is allocated.<br>
+	 * All the pieces are visited, including the empty ones.
+	 * @param string
+	 * @param separator a literal, not a regular expression
+	 * @param trim if the bounds are moved inside the whitespace at the ends of the piece, same rules as {@link String#trim()}
+	 * @param visitor
+	 * @return the number of pieces
+	 */
+	public static int split(String string, String separator, boolean trim, ISplitVisitor visitor) {
+		int sepLength = separator.length();
+		if (sepLength == 0) {
+			throw new IllegalArgumentException("Empty separator");
+		}
+		int length = string.length();
+		int count = 0;
+		int from = 0;
+		while (true) {
+			int to = sepLength == 1 ? string.indexOf(separator.charAt(0), from) : string.indexOf(separator, from);
+			int end = to < 0 ? length : to;
+			int start = from;
+			if (trim) {
+				while (start < end && string.charAt(start) <= ' ') {
+					start++;
+				}
+				while (end > start && string.charAt(end - 1) <= ' ') {
+					end--;
+				}
+			}
+			visitor.visit(string, start, end);
+			count++;
+			if (to < 0) {
+				return count;
+			}
+			from = to + sepLength;
+		}
+	}
+
+	/**
+	 * @param separator
+	 * @return true if the regular expression matches only the separator itself
+	 */
+	private static boolean isLiteral(String separator) {
+		if (empty(separator)) {
+			return false;
+		}
+		for (int i = 0; i < separator.length(); i++) {
+			if (REGEX_META_CHARACTERS.indexOf(separator.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Receives the bounds of the pieces found by {@link UString#split(String, String, boolean, ISplitVisitor)}
+	 * @author Alexandru Bledea
+	 * @since Dec 9, 2013
+	 */
+	public static interface ISplitVisitor {
+
+		/**
+		 * @param source the string that is split
+		 * @param from the start of the piece, inclusive
+		 * @param to the end of the piece, exclusive
+		 */
+		void visit(String source, int from, int to);
+	}
+
+}
@@ -3,16 +3,11 @@
  */
 package com.notbed.util;
 
-import static java.lang.Integer.parseInt;
-import static java.util.Calendar.HOUR_OF_DAY;
-import static java.util.Calendar.MINUTE;
 import static java.util.concurrent.TimeUnit.HOURS;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
+import java.util.TimeZone;
 import java.util.regex.Pattern;
 
 /**
@@ -25,6 +20,9 @@ public class UTime {
 	public static final Pattern VALID_TIME_24H_NO_SPACES = Pattern.compile("^(([0-9])|([0-1][0-9])|([2][0-3])):(([0-5][0-9]))$");
 	public static final Pattern VALID_TIME_24H = Pattern.compile("^(([0-9])|([0-1][0-9])|([2][0-3]))( )?:( )?(([0-5][0-9]))$");
 
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
 	/**
 	 * @return
 	 */
@@ -34,6 +32,128 @@ public class UTime {
 		return instance;
 	}
 
+	/**
+	 * Parses a time in one of the formats accepted by {@link #VALID_TIME_24H_NO_SPACES} and {@link #VALID_TIME_12H_NO_SPACES}
+	 * (or {@link #VALID_TIME_24H} and {@link #VALID_TIME_12H} if <b>allowSpaces</b>), in a single pass, without regular expressions or substrings.
+	 * @param time
+	 * @param allowSpaces if a space is allowed around the colon and before am/pm
+	 * @return the minutes since midnight
+	 * @throws IllegalArgumentException if there is no time
+	 * @throws IllegalStateException if the time is invalid
+	 */
+	public static int parseMinuteOfDay(String time, boolean allowSpaces) {
+		if (time == null) {
+			throw new IllegalArgumentException("No time provided!");
+		}
+		int start = 0;
+		int end = time.length();
+		while (start < end && time.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && time.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		int minutes = parseMinuteOfDay(time, start, end, allowSpaces);
+		if (minutes < 0) {
+			throw new IllegalStateException(String.format("Invalid time: '%s'", time.substring(start, end)));
+		}
+		return minutes;
+	}
+
+	/**
+	 * @param time
+	 * @param pos
+	 * @param end
+	 * @param allowSpaces
+	 * @return the minutes since midnight or -1 if invalid
+	 */
+	private static int parseMinuteOfDay(CharSequence time, int pos, int end, boolean allowSpaces) {
+		int hourStart = pos;
+		if (pos == end || !isDigit(time.charAt(pos))) {
+			return -1;
+		}
+		int hour = time.charAt(pos++) - '0';
+		if (pos < end && isDigit(time.charAt(pos))) {
+			hour = hour * 10 + time.charAt(pos++) - '0';
+		}
+		boolean twoDigitHour = pos - hourStart == 2;
+		boolean leadingZero = twoDigitHour && time.charAt(hourStart) == '0';
+		if (allowSpaces && pos < end && time.charAt(pos) == ' ') {
+			pos++;
+		}
+		if (pos == end || time.charAt(pos++) != ':') {
+			return -1;
+		}
+		if (allowSpaces && pos < end && time.charAt(pos) == ' ') {
+			pos++;
+		}
+		if (end - pos < 2 || !isDigit(time.charAt(pos)) || time.charAt(pos) > '5' || !isDigit(time.charAt(pos + 1))) {
+			return -1;
+		}
+		int minute = (time.charAt(pos) - '0') * 10 + time.charAt(pos + 1) - '0';
+		pos += 2;
+		if (pos == end) { // 24h
+			return hour <= 23 ? hour * 60 + minute : -1;
+		}
+		if (allowSpaces && time.charAt(pos) == ' ') {
+			pos++;
+		}
+		if (end - pos != 2) {
+			return -1;
+		}
+		char ap = Character.toLowerCase(time.charAt(pos));
+		if ((ap != 'a' && ap != 'p') || Character.toLowerCase(time.charAt(pos + 1)) != 'm') {
+			return -1;
+		}
+		if (hour == 0 || hour > 12 || (leadingZero && hour > 9)) {
+			return -1;
+		}
+		boolean am = ap == 'a';
+		if (hour == 12 && am) {
+			hour = 0;
+		} else if (hour < 12 && !am) {
+			hour += 12;
+		}
+		return hour * 60 + minute;
+	}
+
+	/**
+	 * @param c
+	 * @return
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * @param date
+	 * @return the minutes since midnight in the default time zone
+	 */
+	public static int minuteOfDay(Date date) {
+		return minuteOfDay(date.getTime(), TimeZone.getDefault());
+	}
+
+	/**
+	 * Same as reading {@link Calendar#HOUR_OF_DAY} and {@link Calendar#MINUTE} from a calendar, without creating one
+	 * @param epochMillis
+	 * @param zone
+	 * @return the minutes since midnight in the time zone
+	 */
+	public static int minuteOfDay(long epochMillis, TimeZone zone) {
+		long local = epochMillis + zone.getOffset(epochMillis);
+		return (int) (floorMod(local, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+	}
+
+	/**
+	 * @param value
+	 * @param modulo
+	 * @return
+	 */
+	private static long floorMod(long value, long modulo) {
+		long mod = value % modulo;
+		return mod < 0 ? mod + modulo : mod;
+	}
+
 	/**
 	 * @author Alexandru Bledea
 	 * @since Oct 10, 2013
@@ -67,10 +187,45 @@ public class UTime {
 		 * @return
 		 */
 		public boolean isDateInside(Date date) {
-			HourInfo hourInfo = new HourInfo(date);
-			int result1 = t1.compareTo(hourInfo);
-			int result2 = t2.compareTo(hourInfo);
-			return (result1 < result2) == ascSpan;
+			if (date == null) {
+				throw new IllegalStateException("No time provided.");
+			}
+			return isMinuteInside(minuteOfDay(date));
+		}
+
+		/**
+		 * both ends are inside the span, a span that wraps past midnight contains the minutes from its start to midnight and from midnight to its end
+		 * @param minuteOfDay
+		 * @return
+		 */
+		public boolean isMinuteInside(int minuteOfDay) {
+			int start = t1.getAllMinutes();
+			int end = t2.getAllMinutes();
+			if (ascSpan) {
+				return start <= minuteOfDay && minuteOfDay <= end;
+			}
+			return minuteOfDay >= start || minuteOfDay <= end;
+		}
+
+		/**
+		 * @return the first minute of the span, since midnight
+		 */
+		public int getStartMinute() {
+			return t1.getAllMinutes();
+		}
+
+		/**
+		 * @return the last minute of the span, since midnight
+		 */
+		public int getEndMinute() {
+			return t2.getAllMinutes();
+		}
+
+		/**
+		 * @return true if the span ends on the next day
+		 */
+		public boolean isWrapping() {
+			return !ascSpan;
 		}
 
 		/**
@@ -82,7 +237,7 @@ public class UTime {
 			if (span == null) {
 				return false;
 			}
-			return t1.getAllMinutes() <= span.t2.getAllMinutes() && span.t1.getAllMinutes() <= t2.getAllMinutes();
+			return isMinuteInside(span.getStartMinute()) || span.isMinuteInside(getStartMinute());
 		}
 
 		/* (non-Javadoc)
@@ -94,25 +249,15 @@ public class UTime {
 		}
 
 		/**
-		 * AAA doesn't work very well with overflowing times
 		 * @param hourSpans
-		 * @return
+		 * @return true if at least one minute is inside two of the spans
+		 * @see HourSpanIndex#hasOverlaps()
 		 */
 		public static boolean areSpansOverlapping(HourSpan... hourSpans) {
 			if (hourSpans == null || hourSpans.length == 0) {
 				return false;
 			}
-			List<HourSpan> list = new ArrayList<HourSpan>(Arrays.asList(hourSpans));
-			while (list.size() > 1) {
-				HourSpan removed = list.remove(0);
-				for (HourSpan hourSpan : list) {
-					if (removed.overlaps(hourSpan)) {
-						System.out.println(removed + " overlaps " + hourSpan);
-						return true;
-					}
-				}
-			}
-			return false;
+			return new HourSpanIndex(hourSpans).hasOverlaps();
 		}
 	}
 
@@ -122,74 +267,16 @@ public class UTime {
 	 */
 	private static class HourInfo implements Comparable<HourInfo> {
 
-		private final String trimmedTime;
 		private final int hour24;
 		private final int minute;
 
-		/**
-		 *
-		 */
-		public HourInfo(Date date) {
-			this(getTime(date), false);
-		}
-
 		/**
 		 * @param time
 		 */
 		public HourInfo(String time, boolean allowSpaces) {
-			if (time == null) {
-				throw new IllegalArgumentException("No time provided!");
-			}
-			trimmedTime = time.trim();
-
-			Pattern pattern12h;
-			Pattern pattern24h;
-			if (allowSpaces) {
-				pattern12h = VALID_TIME_12H;
-				pattern24h = VALID_TIME_24H;
-			} else {
-				pattern12h = VALID_TIME_12H_NO_SPACES;
-				pattern24h = VALID_TIME_24H_NO_SPACES;
-			}
-			boolean format24h = matches(pattern24h, trimmedTime);
-			if (!format24h && !matches(pattern12h, trimmedTime)) {
-				throw new IllegalStateException(String.format("Invalid time: '%s'", trimmedTime));
-			}
-			List<String> tokens = UString.breakAndTrimLines(trimmedTime, ":");
-			int hour = parseInt(tokens.get(0));
-			String minuteToken = tokens.get(1);
-			String amToken = null;
-			if (format24h) {
-				minute = parseInt(minuteToken);
-			} else {
-				if (tokens.size() == 2) {
-					minute = parseInt(minuteToken.substring(0, 2));
-					amToken = minuteToken.substring(2, 4);
-				} else {
-					minute = parseInt(minuteToken);
-					amToken = tokens.get(2);
-				}
-				boolean am = amToken.toLowerCase().equals("am");
-				if (hour == 12) {
-					if (am) {
-						hour = 0;
-					}
-				}
-				if (hour < 12 && !am) {
-					hour += 12;
-					hour %= 24;
-				}
-			}
-			hour24 = hour;
-		}
-
-		/**
-		 * @param p
-		 * @param s
-		 * @return
-		 */
-		private boolean matches(Pattern p, String s) {
-			return p.matcher(s).matches();
+			int minutes = parseMinuteOfDay(time, allowSpaces);
+			hour24 = minutes / 60;
+			minute = minutes % 60;
 		}
 
 		/* (non-Javadoc)
@@ -200,11 +287,11 @@ public class UTime {
 			if (o == null) {
 				return 0;
 			}
-			int result = compare(hour24, o.hour24);
+			int result = Integer.compare(hour24, o.hour24);
 			if (result != 0) {
 				return result;
 			}
-			return compare(minute, o.minute);
+			return Integer.compare(minute, o.minute);
 		}
 
 		/**
@@ -213,35 +300,5 @@ public class UTime {
 		public int getAllMinutes(){
 			return (int) (HOURS.toMinutes(hour24) + minute);
 		}
-
-		/**
-		 * @param i1
-		 * @param i2
-		 * @return
-		 */
-		private int compare(int i1, int i2) {
-			return new Integer(i1).compareTo(new Integer(i2));
-		}
-
-		/**
-		 * @param date
-		 * @return
-		 */
-		private static String getTime(Date date) {
-			if (date == null) {
-				throw new IllegalStateException("No time provided.");
-			}
-			Calendar instance = Calendar.getInstance();
-			instance.setTime(date);
-			int h24 = instance.get(HOUR_OF_DAY);
-			int minute = instance.get(MINUTE);
-			StringBuilder time = new StringBuilder();
-			time.append(h24).append(":");
-			if (minute < 10) {
-				time.append(0);
-			}
-			time.append(minute);
-			return time.toString();
-		}
 	}
 }
\ No newline at end of file
@@ -14,6 +14,11 @@ import java.util.Set;
  */
 public final class AIMap<K, X, I, V extends X> implements Map<K, V> {
 
+	/**
+	 * {@link com.notbed.util.Metrics} counter and timer of the initializer, also used by {@link MapUtil#get(Map, Object, Object, IEvaluator)}
+	 */
+	public static final String INITIALIZER_METRIC = "AIMap.initializer";
+
 	private final Map<K, V> map;
 	private final IEvaluator<I, X> initializer;
 
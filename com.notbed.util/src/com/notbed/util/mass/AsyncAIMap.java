@@ -0,0 +1,431 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.notbed.util.IClearable;
+import com.notbed.util.IDroppableCache;
+import com.notbed.util.Metrics;
+
+/**
+ * Asynchronous Auto Initializing Map, for loaders doing I/O, like remote or database fetches<br>
+ * {@link #get(Object)} never blocks, it returns the {@link CompletableFuture} of the value and the load runs on the <b>executor</b>.
+ * Like in {@link ConcurrentAIMap}, a key is loaded at most once at a time, everybody asking for it while it loads waits for the same load.
+ * Every caller gets its own future, cancelling or completing it doesn't affect the others or the cached value.<br>
+ * With a bulk loader, see {@link #createBatching(IEvaluatorWithException, Executor, long, TimeUnit, int)}, the misses arriving within
+ * <b>window</b> of the first one are loaded together with one call, a batch is sent early once it has <b>maxBatchSize</b> keys.<br>
+ * Loaded values are kept until they are removed, failed loads and <b>null</b> values are not kept, the next {@link #get(Object)} loads them again.
+ * <b>null</b> keys are not supported.
+ * @author Alexandru Bledea
+ * @since Dec 23, 2013
+ */
+public final class AsyncAIMap<K, V> implements IDroppableCache, IClearable {
+
+	/**
+	 * {@link Metrics} counter of the loaded keys and timer of the loader calls
+	 */
+	public static final String INITIALIZER_METRIC = "AsyncAIMap.initializer";
+
+	/**
+	 * {@link Metrics} histogram of the number of keys per bulk loader call
+	 */
+	public static final String BATCH_SIZE_METRIC = "AsyncAIMap.batchSize";
+
+	private static final ScheduledExecutorService WINDOW_TIMER;
+
+	static {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+			/* (non-Javadoc)
+			 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+			 */
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "notbed-async-aimap-window");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		WINDOW_TIMER = timer;
+	}
+
+	private final ConcurrentMap<K, CompletableFuture<V>> futures = new ConcurrentHashMap<K, CompletableFuture<V>>();
+	private final IEvaluatorWithException<? super K, ? extends V> loader;
+	private final IEvaluatorWithException<? super Collection<K>, ? extends Map<? extends K, ? extends V>> bulkLoader;
+	private final Executor executor;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final Object batchLock = new Object();
+	private Map<K, CompletableFuture<V>> batch; // guarded by batchLock
+
+	/**
+	 * @param loader
+	 * @param bulkLoader
+	 * @param executor
+	 * @param windowNanos
+	 * @param maxBatchSize
+	 */
+	private AsyncAIMap(IEvaluatorWithException<? super K, ? extends V> loader,
+			IEvaluatorWithException<? super Collection<K>, ? extends Map<? extends K, ? extends V>> bulkLoader, Executor executor,
+			long windowNanos, int maxBatchSize) {
+		if (loader == null && bulkLoader == null || executor == null) {
+			throw new NullPointerException("Missing loader or executor");
+		}
+		if (windowNanos < 0 || maxBatchSize < 1) {
+			throw new IllegalArgumentException("Negative window or empty batches");
+		}
+		this.loader = loader;
+		this.bulkLoader = bulkLoader;
+		this.executor = executor;
+		this.windowNanos = windowNanos;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Every key is loaded with its own <b>loader</b> call on the <b>executor</b>
+	 * @param loader must be thread safe
+	 * @param executor
+	 * @return
+	 */
+	public static <K, V> AsyncAIMap<K, V> create(IEvaluatorWithException<? super K, ? extends V> loader, Executor executor) {
+		return new AsyncAIMap<K, V>(loader, null, executor, 0, 1);
+	}
+
+	/**
+	 * The misses are gathered for <b>window</b> after the first one and loaded with one <b>bulkLoader</b> call on the <b>executor</b>.<br>
+	 * The keys the bulk loader leaves out of its result are loaded as <b>null</b>.
+	 * @param bulkLoader gets the keys in the order they were asked for, must be thread safe
+	 * @param executor
+	 * @param window how long a batch waits for more keys, 0 sends the keys that arrived while the first one was scheduled
+	 * @param unit
+	 * @param maxBatchSize a batch is sent as soon as it has this many keys
+	 * @return
+	 */
+	public static <K, V> AsyncAIMap<K, V> createBatching(
+			IEvaluatorWithException<? super Collection<K>, ? extends Map<? extends K, ? extends V>> bulkLoader, Executor executor, long window,
+			TimeUnit unit, int maxBatchSize) {
+		return new AsyncAIMap<K, V>(null, bulkLoader, executor, unit.toNanos(window), maxBatchSize);
+	}
+
+	/**
+	 * @param key
+	 * @return the value, loaded or being loaded, in a future of the caller
+	 */
+	public CompletableFuture<V> get(K key) {
+		if (key == null) {
+			throw new NullPointerException("Null key");
+		}
+		CompletableFuture<V> future = futures.get(key);
+		if (future == null) {
+			CompletableFuture<V> newFuture = new CompletableFuture<V>();
+			future = futures.putIfAbsent(key, newFuture);
+			if (future == null) {
+				future = newFuture;
+				if (bulkLoader == null) {
+					load(key, newFuture);
+				} else {
+					enqueue(key, newFuture);
+				}
+			}
+		}
+		return future.thenApply(Function.<V> identity()); // the cached future never leaves the map
+	}
+
+	/**
+	 * with a bulk loader, the misses go into the same batch
+	 * @param keys
+	 * @return the values by key, in the order of the keys, the keys that loaded as <b>null</b> are left out
+	 */
+	public CompletableFuture<Map<K, V>> getAll(Collection<? extends K> keys) {
+		for (K key : keys) {
+			if (key == null) {
+				throw new NullPointerException("Null key");
+			}
+		}
+		final Map<K, CompletableFuture<V>> requested = new LinkedHashMap<K, CompletableFuture<V>>();
+		Map<K, CompletableFuture<V>> missing = new LinkedHashMap<K, CompletableFuture<V>>();
+		for (K key : keys) {
+			if (requested.containsKey(key)) {
+				continue;
+			}
+			CompletableFuture<V> future = futures.get(key);
+			if (future == null) {
+				CompletableFuture<V> newFuture = new CompletableFuture<V>();
+				future = futures.putIfAbsent(key, newFuture);
+				if (future == null) {
+					future = newFuture;
+					missing.put(key, newFuture);
+				}
+			}
+			requested.put(key, future);
+		}
+		if (!missing.isEmpty()) {
+			if (bulkLoader == null) {
+				loadEach(missing);
+			} else {
+				enqueueAll(missing);
+			}
+		}
+		return CompletableFuture.allOf(requested.values().toArray(new CompletableFuture<?>[requested.size()])).thenApply(
+				new Function<Void, Map<K, V>>() {
+
+					/* (non-Javadoc)
+					 * @see java.util.function.Function#apply(java.lang.Object)
+					 */
+					@Override
+					public Map<K, V> apply(Void ignored) {
+						Map<K, V> values = new LinkedHashMap<K, V>(InternalEvaluator.hashCapacity(requested.size()));
+						for (Map.Entry<K, CompletableFuture<V>> entry : requested.entrySet()) {
+							V value = entry.getValue().join();
+							if (value != null) {
+								values.put(entry.getKey(), value);
+							}
+						}
+						return values;
+					}
+				});
+	}
+
+	/**
+	 * @param key
+	 * @return the value if it was loaded, null if it was not or it is still loading
+	 */
+	public V getIfPresent(K key) {
+		CompletableFuture<V> future = futures.get(key);
+		return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+	}
+
+	/**
+	 * @param key
+	 * @param value replaces the loaded value, a load in progress still completes the futures handed out before
+	 */
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null value");
+		}
+		futures.put(key, CompletableFuture.completedFuture(value));
+	}
+
+	/**
+	 * @param key
+	 */
+	public void remove(K key) {
+		futures.remove(key);
+	}
+
+	/**
+	 * @return how many keys are loaded or loading
+	 */
+	public int size() {
+		return futures.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IClearable#clear()
+	 */
+	@Override
+	public void clear() {
+		futures.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IDroppableCache#dropCache()
+	 */
+	@Override
+	public void dropCache() {
+		clear();
+	}
+
+	/**
+	 * @param key
+	 * @param future
+	 */
+	private void load(final K key, final CompletableFuture<V> future) {
+		try {
+			executor.execute(new Runnable() {
+
+				/* (non-Javadoc)
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					V value;
+					try {
+						value = InitializerMetrics.evaluate(INITIALIZER_METRIC, 1, loader, key);
+					} catch (Throwable t) {
+						fail(key, future, t);
+						return;
+					}
+					complete(key, future, value);
+				}
+			});
+		} catch (RuntimeException e) {
+			fail(key, future, e);
+		}
+	}
+
+	/**
+	 * @param missing
+	 */
+	private void loadEach(Map<K, CompletableFuture<V>> missing) {
+		for (Map.Entry<K, CompletableFuture<V>> entry : missing.entrySet()) {
+			load(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param future
+	 */
+	private void enqueue(K key, CompletableFuture<V> future) {
+		enqueueAll(Collections.singletonMap(key, future));
+	}
+
+	/**
+	 * adds the keys to the open batch, the first key of a batch schedules its dispatch after the window, a full batch is dispatched right away
+	 * @param missing
+	 */
+	private void enqueueAll(Map<K, CompletableFuture<V>> missing) {
+		List<Map<K, CompletableFuture<V>>> full = null;
+		Map<K, CompletableFuture<V>> opened = null;
+		boolean schedule;
+		synchronized (batchLock) {
+			for (Map.Entry<K, CompletableFuture<V>> entry : missing.entrySet()) {
+				if (batch == null) {
+					batch = opened = new LinkedHashMap<K, CompletableFuture<V>>();
+				}
+				batch.put(entry.getKey(), entry.getValue());
+				if (batch.size() >= maxBatchSize) {
+					if (full == null) {
+						full = new ArrayList<Map<K, CompletableFuture<V>>>();
+					}
+					full.add(batch);
+					batch = null;
+				}
+			}
+			schedule = opened != null && batch == opened;
+		}
+		if (full != null) {
+			for (Map<K, CompletableFuture<V>> keys : full) {
+				loadBatch(keys);
+			}
+		}
+		if (schedule) {
+			scheduleWindow(opened);
+		}
+	}
+
+	/**
+	 * @param expected the batch the window was opened for
+	 */
+	private void scheduleWindow(final Map<K, CompletableFuture<V>> expected) {
+		try {
+			WINDOW_TIMER.schedule(new Runnable() {
+
+				/* (non-Javadoc)
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					synchronized (batchLock) {
+						if (batch != expected) {
+							return; // sent when it filled up
+						}
+						batch = null;
+					}
+					loadBatch(expected);
+				}
+			}, windowNanos, TimeUnit.NANOSECONDS);
+		} catch (RuntimeException e) {
+			synchronized (batchLock) {
+				if (batch == expected) {
+					batch = null;
+				}
+			}
+			loadBatch(expected);
+		}
+	}
+
+	/**
+	 * @param keys
+	 */
+	private void loadBatch(final Map<K, CompletableFuture<V>> keys) {
+		try {
+			executor.execute(new Runnable() {
+
+				/* (non-Javadoc)
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					Metrics.histogram(BATCH_SIZE_METRIC).record(keys.size());
+					Map<? extends K, ? extends V> values;
+					try {
+						values = InitializerMetrics.evaluate(INITIALIZER_METRIC, keys.size(), bulkLoader,
+								Collections.unmodifiableList(new ArrayList<K>(keys.keySet())));
+					} catch (Throwable t) {
+						failAll(keys, t);
+						return;
+					}
+					for (Map.Entry<K, CompletableFuture<V>> entry : keys.entrySet()) {
+						complete(entry.getKey(), entry.getValue(), values == null ? null : values.get(entry.getKey()));
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			failAll(keys, e);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param future
+	 * @param value null values are not kept
+	 */
+	private void complete(K key, CompletableFuture<V> future, V value) {
+		if (value == null) {
+			futures.remove(key, future);
+		}
+		if (!future.complete(value)) {
+			futures.remove(key, future); // completed by somebody else, don't keep what we didn't load
+		}
+	}
+
+	/**
+	 * forgets the future before failing it, so the next {@link #get(Object)} loads the key again
+	 * @param key
+	 * @param future
+	 * @param failure
+	 */
+	private void fail(K key, CompletableFuture<V> future, Throwable failure) {
+		futures.remove(key, future);
+		future.completeExceptionally(failure);
+	}
+
+	/**
+	 * @param keys
+	 * @param failure
+	 */
+	private void failAll(Map<K, CompletableFuture<V>> keys, Throwable failure) {
+		for (Map.Entry<K, CompletableFuture<V>> entry : keys.entrySet()) {
+			fail(entry.getKey(), entry.getValue(), failure);
+		}
+	}
+}
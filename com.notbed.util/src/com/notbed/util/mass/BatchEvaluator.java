@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link IBatchEvaluator} that can be used wherever an {@link IEvaluator} is expected,
+ * a single evaluation is a chunk of one.
+ * @author Alexandru Bledea
+ * @since Dec 22, 2013
+ */
+public abstract class BatchEvaluator<O, R> implements IEvaluator<O, R>, IBatchEvaluator<O, R> {
+
+	/**
+	 * how many objects the mass operations evaluate at once
+	 */
+	public static final int CHUNK_SIZE = 256;
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+	 */
+	@Override
+	public final R evaluate(O obj) {
+		List<R> out = new ArrayList<R>(1);
+		evaluateAll(Collections.singletonList(obj), out);
+		if (out.size() != 1) {
+			throw new IllegalStateException("Expected 1 result, got " + out.size());
+		}
+		return out.get(0);
+	}
+}
@@ -0,0 +1,343 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.notbed.util.IClearable;
+import com.notbed.util.IDroppableCache;
+import com.notbed.util.Metrics;
+import com.notbed.util.mass.EvictionQueue.Node;
+
+/**
+ * Bounded Auto Initializing Map<br>
+ * Works like {@link AIMap}, but it never holds more than a maximum size (or weight),
+ * when it grows over that limit entries are evicted according to the {@link EvictionPolicy}.<br>
+ * The map is synchronized, the <b>initializer</b> is evaluated while holding the lock.<br>
+ * {@link #keySet()}, {@link #values()} and {@link #entrySet()} return unmodifiable snapshots.
+ * @author Alexandru Bledea
+ * @since Nov 14, 2013
+ */
+public final class BoundedAIMap<K, X, I, V extends X> implements Map<K, V>, IDroppableCache, IClearable {
+
+	/**
+	 * {@link Metrics} counter and timer of the initializer
+	 */
+	public static final String INITIALIZER_METRIC = "BoundedAIMap.initializer";
+
+	private final Map<K, Node<K, V>> data = new HashMap<K, Node<K, V>>();
+	private final IEvaluator<I, X> initializer;
+	private final IEvaluator<? super V, Integer> weigher;
+	private final EvictionQueue<K, V> queue;
+	private final long maximumWeight;
+
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * @param maximumSize the maximum number of entries
+	 * @param policy
+	 * @param initializer
+	 */
+	public BoundedAIMap(int maximumSize, EvictionPolicy policy, IEvaluator<I, X> initializer) {
+		this(maximumSize, null, policy, initializer);
+	}
+
+	/**
+	 * @param maximumWeight the maximum total weight of the entries
+	 * @param weigher evaluates the weight of a value, if missing every entry weighs 1
+	 * @param policy
+	 * @param initializer
+	 */
+	public BoundedAIMap(long maximumWeight, IEvaluator<? super V, Integer> weigher, EvictionPolicy policy, IEvaluator<I, X> initializer) {
+		if (maximumWeight <= 0) {
+			throw new IllegalArgumentException("The maximum weight must be positive");
+		}
+		if (policy == null || initializer == null) {
+			throw new NullPointerException("Missing policy or initializer");
+		}
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.initializer = initializer;
+		this.queue = policy.createQueue(maximumWeight);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#size()
+	 */
+	@Override
+	public synchronized int size() {
+		return data.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#isEmpty()
+	 */
+	@Override
+	public synchronized boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsKey(java.lang.Object)
+	 */
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return data.containsKey(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsValue(java.lang.Object)
+	 */
+	@Override
+	public synchronized boolean containsValue(Object value) {
+		for (Node<K, V> node : data.values()) {
+			if (value == null ? node.value == null : value.equals(node.value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#get(java.lang.Object)
+	 */
+	@Override
+	public synchronized V get(Object key) {
+		Node<K, V> node = data.get(key);
+		if (node != null) {
+			hitCount++;
+			queue.onAccess(node);
+			return node.value;
+		}
+		missCount++;
+//		same unchecked conversion as in MapUtil.get
+		V value = (V) InitializerMetrics.evaluate(INITIALIZER_METRIC, initializer, (I) key);
+		store((K) key, value);
+		return value;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public synchronized V put(K key, V value) {
+		return store(key, value);
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return the previous value
+	 */
+	private V store(K key, V value) {
+		int newWeight = weigh(value);
+		Node<K, V> node = data.get(key);
+		V previous = null;
+		if (node == null) {
+			node = new Node<K, V>(key, value, newWeight);
+			data.put(key, node);
+		} else {
+			previous = node.value;
+			queue.onRemove(node);
+			weight -= node.weight;
+			node.value = value;
+			node.weight = newWeight;
+		}
+		weight += newWeight;
+		queue.onAdd(node);
+		evict();
+		return previous;
+	}
+
+	/**
+	 *
+	 */
+	private void evict() {
+		while (weight > maximumWeight && !data.isEmpty()) {
+			Node<K, V> victim = queue.evict();
+			data.remove(victim.key);
+			weight -= victim.weight;
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private int weigh(V value) {
+		if (weigher == null || value == null) {
+			return 1;
+		}
+		Integer w = weigher.evaluate(value);
+		if (w == null || w < 0) {
+			throw new IllegalArgumentException("Invalid weight " + w + " for " + value);
+		}
+		return w;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#remove(java.lang.Object)
+	 */
+	@Override
+	public synchronized V remove(Object key) {
+		Node<K, V> node = data.remove(key);
+		if (node == null) {
+			return null;
+		}
+		queue.onRemove(node);
+		weight -= node.weight;
+		return node.value;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#putAll(java.util.Map)
+	 */
+	@Override
+	public synchronized void putAll(Map<? extends K, ? extends V> m) {
+		for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+			store(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#clear()
+	 */
+	@Override
+	public synchronized void clear() {
+		data.clear();
+		queue.clear();
+		weight = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IDroppableCache#dropCache()
+	 */
+	@Override
+	public void dropCache() {
+		clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#keySet()
+	 */
+	@Override
+	public synchronized Set<K> keySet() {
+		return Collections.unmodifiableSet(new LinkedHashSet<K>(data.keySet()));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#values()
+	 */
+	@Override
+	public synchronized Collection<V> values() {
+		List<V> values = new ArrayList<V>(data.size());
+		for (Node<K, V> node : data.values()) {
+			values.add(node.value);
+		}
+		return Collections.unmodifiableList(values);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#entrySet()
+	 */
+	@Override
+	public synchronized Set<Entry<K, V>> entrySet() {
+		return Collections.unmodifiableMap(snapshot()).entrySet();
+	}
+
+	/**
+	 * @return
+	 */
+	private Map<K, V> snapshot() {
+		Map<K, V> snapshot = new LinkedHashMap<K, V>(data.size() * 4 / 3 + 1);
+		for (Node<K, V> node : data.values()) {
+			snapshot.put(node.key, node.value);
+		}
+		return snapshot;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * @return how many times {@link #get(Object)} found the key
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return how many times {@link #get(Object)} had to evaluate the initializer
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return how many entries were evicted because the map was full
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return the ratio of hits from all the {@link #get(Object)} calls, 1 if there were no calls
+	 */
+	public synchronized double getHitRate() {
+		long requests = hitCount + missCount;
+		return requests == 0 ? 1.0 : (double) hitCount / requests;
+	}
+
+	/**
+	 * @return the current total weight, the same as the size if there is no weigher
+	 */
+	public synchronized long getWeightedSize() {
+		return weight;
+	}
+
+	/**
+	 * @return the maximum weight
+	 */
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	/**
+	 * resets the hit, miss and eviction counters
+	 */
+	public synchronized void resetStats() {
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	}
+
+	/**
+	 * Creates a {@link BoundedAIMap} holding at most <b>maximumSize</b> entries<br>
+	 * @param maximumSize
+	 * @param policy
+	 * @param initializer
+	 * @return
+	 */
+	public final static <K, X, I, V extends X> BoundedAIMap<K, X, I, V> create(int maximumSize, EvictionPolicy policy,
+			IEvaluator<I, X> initializer) {
+		return new BoundedAIMap<K, X, I, V>(maximumSize, policy, initializer);
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A buffer addressed by long positions, made of direct or memory mapped chunks so it can grow past 2GB.<br>
+ * Chunks are created on first write. Reads only use absolute positions, so concurrent readers are safe once writing is over.<br>
+ * The chunk size is picked from the expected size, between {@link #MIN_CHUNK_BITS} and {@link #MAX_CHUNK_BITS}, so small buffers stay small.
+ * The chunk size is only an addressing detail, a file written with one chunk size can be read with another.
+ * @author Alexandru Bledea
+ * @since Nov 27, 2013
+ */
+abstract class ChunkedBuffer {
+
+	static final int MIN_CHUNK_BITS = 16;
+	static final int MAX_CHUNK_BITS = 26;
+
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	final int chunkBits;
+	final int chunkSize;
+	private final int chunkMask;
+
+	/**
+	 * @param expectedSize how many bytes we expect to write or read
+	 */
+	ChunkedBuffer(long expectedSize) {
+		int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, expectedSize - 1));
+		this.chunkBits = Math.max(MIN_CHUNK_BITS, Math.min(MAX_CHUNK_BITS, bits));
+		this.chunkSize = 1 << chunkBits;
+		this.chunkMask = chunkSize - 1;
+	}
+
+	/**
+	 * @param index
+	 * @return a new chunk of {@link #chunkSize} bytes, the last chunk of a read only file can be shorter
+	 * @throws IOException
+	 */
+	protected abstract ByteBuffer createChunk(int index) throws IOException;
+
+	/**
+	 * @param position
+	 * @return
+	 */
+	private ByteBuffer chunk(long position) {
+		int index = (int) (position >>> chunkBits);
+		while (chunks.size() <= index) {
+			try {
+				chunks.add(createChunk(chunks.size()));
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot allocate chunk " + chunks.size(), e);
+			}
+		}
+		return chunks.get(index);
+	}
+
+	/**
+	 * @param position
+	 * @return
+	 */
+	final int getInt(long position) {
+		int offset = (int) (position & chunkMask);
+		if (offset <= chunkSize - 4) {
+			return chunk(position).getInt(offset);
+		}
+		return (int) getBytes(position, 4);
+	}
+
+	/**
+	 * @param position
+	 * @return
+	 */
+	final long getLong(long position) {
+		int offset = (int) (position & chunkMask);
+		if (offset <= chunkSize - 8) {
+			return chunk(position).getLong(offset);
+		}
+		return getBytes(position, 8);
+	}
+
+	/**
+	 * @param position
+	 * @param value
+	 */
+	final void putInt(long position, int value) {
+		int offset = (int) (position & chunkMask);
+		if (offset <= chunkSize - 4) {
+			chunk(position).putInt(offset, value);
+		} else {
+			putBytes(position, value, 4);
+		}
+	}
+
+	/**
+	 * @param position
+	 * @param value
+	 */
+	final void putLong(long position, long value) {
+		int offset = (int) (position & chunkMask);
+		if (offset <= chunkSize - 8) {
+			chunk(position).putLong(offset, value);
+		} else {
+			putBytes(position, value, 8);
+		}
+	}
+
+	/**
+	 * @param position
+	 * @param bytes
+	 */
+	final void put(long position, byte[] bytes) {
+		int done = 0;
+		while (done < bytes.length) {
+			int offset = (int) (position & chunkMask);
+			int length = Math.min(bytes.length - done, chunkSize - offset);
+			ByteBuffer target = chunk(position).duplicate();
+			target.position(offset);
+			target.put(bytes, done, length);
+			done += length;
+			position += length;
+		}
+	}
+
+	/**
+	 * @param position
+	 * @param length
+	 * @return a buffer with the bytes, positioned at 0 and limited to <b>length</b>
+	 */
+	final ByteBuffer slice(long position, int length) {
+		int offset = (int) (position & chunkMask);
+		if (offset <= chunkSize - length) {
+			ByteBuffer view = chunk(position).duplicate();
+			view.limit(offset + length).position(offset);
+			return view.slice();
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = getByte(position + i);
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * @param position
+	 * @param bytes
+	 * @return true if the buffer contains exactly these bytes at the position
+	 */
+	final boolean matches(long position, byte[] bytes) {
+		return slice(position, bytes.length).equals(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * creates all the chunks up to <b>size</b>, so later reads never change the chunk list
+	 * @param size
+	 */
+	final void ensureCapacity(long size) {
+		if (size > 0) {
+			chunk(size - 1);
+		}
+	}
+
+	/**
+	 * writes the mapped chunks to the disk
+	 */
+	final void force() {
+		for (ByteBuffer chunk : chunks) {
+			if (chunk instanceof MappedByteBuffer) {
+				((MappedByteBuffer) chunk).force();
+			}
+		}
+	}
+
+	/**
+	 * @param position
+	 * @return
+	 */
+	private byte getByte(long position) {
+		return chunk(position).get((int) (position & chunkMask));
+	}
+
+	/**
+	 * big endian, same as {@link ByteBuffer}
+	 * @param position
+	 * @param count
+	 * @return
+	 */
+	private long getBytes(long position, int count) {
+		long value = 0;
+		for (int i = 0; i < count; i++) {
+			value = (value << 8) | (getByte(position + i) & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * @param position
+	 * @param value
+	 * @param count
+	 */
+	private void putBytes(long position, long value, int count) {
+		for (int i = count - 1; i >= 0; i--) {
+			long p = position + i;
+			chunk(p).put((int) (p & chunkMask), (byte) value);
+			value >>>= 8;
+		}
+	}
+
+	/**
+	 * @param expectedSize
+	 * @return a buffer made of direct chunks, outside the java heap
+	 */
+	static ChunkedBuffer direct(long expectedSize) {
+		return new ChunkedBuffer(expectedSize) {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.ChunkedBuffer#createChunk(int)
+			 */
+			@Override
+			protected ByteBuffer createChunk(int index) {
+				return ByteBuffer.allocateDirect(chunkSize);
+			}
+		};
+	}
+
+	/**
+	 * @param channel
+	 * @param expectedSize
+	 * @return a buffer mapped over the file, the file grows as the chunks are created
+	 */
+	static ChunkedBuffer mapped(final FileChannel channel, long expectedSize) {
+		return new ChunkedBuffer(expectedSize) {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.ChunkedBuffer#createChunk(int)
+			 */
+			@Override
+			protected ByteBuffer createChunk(int index) throws IOException {
+				return channel.map(MapMode.READ_WRITE, (long) index << chunkBits, chunkSize);
+			}
+		};
+	}
+
+	/**
+	 * @param channel
+	 * @return a read only buffer mapped over the whole file, the last chunk ends with the file
+	 * @throws IOException
+	 */
+	static ChunkedBuffer mappedReadOnly(final FileChannel channel) throws IOException {
+		final long length = channel.size();
+		return new ChunkedBuffer(length) {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.ChunkedBuffer#createChunk(int)
+			 */
+			@Override
+			protected ByteBuffer createChunk(int index) throws IOException {
+				long position = (long) index << chunkBits;
+				if (position >= length) {
+					throw new IOException("Position " + position + " is past the end of the file");
+				}
+				return channel.map(MapMode.READ_ONLY, position, Math.min(chunkSize, length - position));
+			}
+		};
+	}
+}
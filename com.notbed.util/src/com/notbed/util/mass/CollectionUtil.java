@@ -1,13 +1,26 @@
 package com.notbed.util.mass;
 
+import static com.notbed.util.mass.InternalEvaluator.NO_DUPE_CHECK;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.notbed.util.UString;
+import com.notbed.util.ITimer;
+import com.notbed.util.Metrics;
+import com.notbed.util.mass.InternalEvaluator.ChunkEvaluator;
 import com.notbed.util.mass.InternalEvaluator.EvaluationResult;
+import com.notbed.util.mass.InternalEvaluator.HashIndexDupeChecker;
 import com.notbed.util.mass.InternalEvaluator.IDupeChecker;
 
 
@@ -17,6 +30,20 @@ import com.notbed.util.mass.InternalEvaluator.IDupeChecker;
  */
 public class CollectionUtil {
 
+	private static final int ESTIMATED_VALUE_LENGTH = 16;
+	private static final int MAX_REUSED_CAPACITY = 1 << 16;
+	private static final ThreadLocal<StringBuilder> JOIN_BUILDER = new ThreadLocal<StringBuilder>();
+
+	/**
+	 * {@link Metrics} timer of the evaluators of {@link #createCollection(Collection, IEvaluator, Collection)}, one sample per object
+	 */
+	public static final String CREATE_COLLECTION_TIMER = "CollectionUtil.createCollection";
+
+	/**
+	 * {@link Metrics} timer of the {@link IBatchEvaluator}s of {@link #createCollection(Collection, IEvaluator, Collection)}, one sample per chunk
+	 */
+	public static final String CREATE_COLLECTION_IN_CHUNKS_TIMER = "CollectionUtil.createCollectionInChunks";
+
 	/**
 	 * Used to transform an array of <b>objects</b> into a <b>collection</b><br>
 	 * The values for the second collection are generated by using a <b>evaluator</b>. <br>
@@ -92,7 +119,9 @@ public class CollectionUtil {
 	 * The values for the second collection are generated by using a <b>evaluator</b>. <br>
 	 * Use <b>allowDupes</b> if you want values that evaluate to the same key to be added to the collection.<br>
 	 * Use <b>skipNullObjects</b> to avoid {@link java.lang.NullPointerException} if a null value is in the collection<br>
-	 * Use <b>skipNullValues</b> to skip adding object to the map it evaluates to null
+	 * Use <b>skipNullValues</b> to skip adding object to the map it evaluates to null<br>
+	 * If the <b>evaluator</b> is an {@link IBatchEvaluator}, like a {@link BatchEvaluator}, it gets the objects a chunk at a time
+	 * and a whole chunk is evaluated before its duplicates are reported.
 	 * @param objects the collection from which we create the collection
 	 * @param evaluator the evaluator
 	 * @param collection the collection where the evaluation result will be added
@@ -109,25 +138,128 @@ public class CollectionUtil {
 		if (objects == null) {
 			objects = new ArrayList<O>();
 		}
+		if (collection instanceof ArrayList) {
+			((ArrayList<V>) collection).ensureCapacity(collection.size() + objects.size());
+		}
+		if (evaluator instanceof IBatchEvaluator) {
+			return createCollectionInChunks(objects, (IBatchEvaluator<O, V>) evaluator, collection, allowDupes, skipNullObjects, skipNullValues);
+		}
 
 		EvaluationResult<V> result = new EvaluationResult<V>();
-		IDupeChecker<V> dupeChecker = new IDupeChecker<V>() {
-
-			@Override
-			public boolean checkIfDupe(V what) {
-				return collection.contains(what);
+		ITimer timer = Metrics.timer(CREATE_COLLECTION_TIMER);
+		if (allowDupes || collection instanceof Set) {
+			IDupeChecker<V> dupeChecker = allowDupes ? (IDupeChecker<V>) NO_DUPE_CHECK : new CollectionDupeChecker<V>(collection);
+			for (O t : objects) {
+				result = InternalEvaluator.evaluate(t, skipNullObjects, evaluator, skipNullValues, allowDupes, dupeChecker, result, timer);
+				if (!result.skip()) {
+					collection.add(result.getResult());
+				}
 			}
-		};
+			return collection;
+		}
 
+//		contains is linear for lists, check against a hash index instead
+		HashIndexDupeChecker<V> index = new HashIndexDupeChecker<V>(collection, objects.size());
 		for (O t : objects) {
-			result = InternalEvaluator.evaluate(t, skipNullObjects, evaluator, skipNullValues, allowDupes, dupeChecker, result);
+			result = InternalEvaluator.evaluate(t, skipNullObjects, evaluator, skipNullValues, allowDupes, index, result, timer);
 			if (!result.skip()) {
-				collection.add(result.getResult());
+				V value = result.getResult();
+				collection.add(value);
+				index.add(value);
+			}
+		}
+		return collection;
+	}
+
+	/**
+	 * @param objects
+	 * @param evaluator
+	 * @param collection
+	 * @param allowDupes
+	 * @param skipNullObjects
+	 * @param skipNullValues
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	private static <C extends Collection<V>, V, O> C createCollectionInChunks(Collection<? extends O> objects, IBatchEvaluator<O, V> evaluator,
+			C collection, boolean allowDupes, boolean skipNullObjects, boolean skipNullValues) throws DuplicateKeyException {
+		ITimer timer = Metrics.isEnabled() ? Metrics.timer(CREATE_COLLECTION_IN_CHUNKS_TIMER) : null;
+		ChunkEvaluator<O, V> chunks = new ChunkEvaluator<O, V>(objects, evaluator, skipNullObjects, timer);
+//		sets tell us about dupes when we add, for the other collections we keep a hash index
+		HashIndexDupeChecker<V> index = allowDupes || collection instanceof Set ? null : new HashIndexDupeChecker<V>(collection, objects.size());
+
+		int size;
+		while ((size = chunks.next()) > 0) {
+			for (int i = 0; i < size; i++) {
+				V value = chunks.result(i);
+				if (value == null && skipNullValues) {
+					continue;
+				}
+				if (index != null && !index.add(value)) {
+					throw new DuplicateKeyException(value);
+				}
+				if (!collection.add(value) && !allowDupes && index == null) {
+					throw new DuplicateKeyException(value);
+				}
+			}
+		}
+		return collection;
+	}
+
+	/**
+	 * Used to transform a collection of <b>objects</b> into another <b>collection</b>, the values are evaluated concurrently on the <b>executor</b>,
+	 * for slow evaluators, like the ones doing I/O.<br>
+	 * At most <b>maxConcurrency</b> objects are evaluated at a time, the calling thread waits for a free slot before submitting the next one.<br>
+	 * The values are added in the order of the objects, after all of them were evaluated, nothing is added if an evaluation failed.
+	 * Objects that are null or that evaluate to <b>null</b> will be skipped.<br>
+	 * The <b>evaluator</b> must be thread safe.
+	 * @param objects the collection from which we create the collection
+	 * @param evaluator the evaluator
+	 * @param collection the collection where the evaluation result will be added
+	 * @param executor where the values are evaluated, on Java 21 and later this can be an executor that runs every task on a new virtual thread
+	 * @param maxConcurrency how many objects can be evaluated at a time
+	 * @param policy what to do when an object cannot be evaluated
+	 * @return the collection passed as argument filled with the evaluated values
+	 * @throws MassEvaluationException if an object could not be evaluated, with all the failures if the policy is {@link FailurePolicy#COLLECT_ALL}
+	 * @throws InterruptedException
+	 */
+	public static <C extends Collection<V>, V, O> C createCollection(Collection<? extends O> objects, IEvaluatorWithException<O, V> evaluator,
+			C collection, Executor executor, int maxConcurrency, FailurePolicy policy) throws MassEvaluationException, InterruptedException {
+		ConcurrentEvaluator<O, V> evaluation = ConcurrentEvaluator.evaluate(objects, evaluator, executor, maxConcurrency, policy);
+		if (collection instanceof ArrayList) {
+			((ArrayList<V>) collection).ensureCapacity(collection.size() + evaluation.size());
+		}
+		for (int i = 0; i < evaluation.size(); i++) {
+			V value = evaluation.result(i);
+			if (value != null) {
+				collection.add(value);
 			}
 		}
 		return collection;
 	}
 
+	/**
+	 * Same as {@link #createCollection(Collection, IEvaluator, Collection)}, the values are added to an {@link ArrayList} sized for all the objects
+	 * @param objects the collection from which we create the list
+	 * @param evaluator the evaluator
+	 * @return a new list filled with the evaluated values, if an object evaluates to null, it is not added to the list
+	 */
+	public static <V, O> List<V> createList(Collection<? extends O> objects, IEvaluator<O, V> evaluator) {
+		int size = objects == null ? 0 : objects.size();
+		return createCollection(objects, evaluator, new ArrayList<V>(size));
+	}
+
+	/**
+	 * Same as {@link #createCollection(Collection, IEvaluator, Collection)}, the values are added to a {@link HashSet} sized for all the objects
+	 * @param objects the collection from which we create the set
+	 * @param evaluator the evaluator
+	 * @return a new set filled with the evaluated values, if an object evaluates to null, it is not added to the set
+	 */
+	public static <V, O> Set<V> createSet(Collection<? extends O> objects, IEvaluator<O, V> evaluator) {
+		int size = objects == null ? 0 : objects.size();
+		return createCollection(objects, evaluator, new HashSet<V>(InternalEvaluator.hashCapacity(size)));
+	}
+
 	/**
 	 * used to break a large collection into smaller collection
 	 * @param collection
@@ -153,20 +285,231 @@ public class CollectionUtil {
 	}
 
 	/**
+	 * used to break a large list into smaller lists without copying, the batches are {@link List#subList(int, int)} views<br>
+	 * the views are only valid as long as the list is not structurally modified
+	 * @param list
+	 * @param maxElements
+	 * @return the views, the last one may be smaller
+	 */
+	public static <O> List<List<O>> partition(List<O> list, int maxElements) {
+		checkBatchSize(maxElements);
+		int size = list.size();
+		List<List<O>> result = new ArrayList<List<O>>((size + maxElements - 1) / maxElements);
+		for (int from = 0; from < size; from += maxElements) {
+			result.add(list.subList(from, Math.min(size, from + maxElements)));
+		}
+		return result;
+	}
+
+	/**
+	 * used to walk a large iterable in batches, lazily<br>
+	 * lists are split into {@link List#subList(int, int)} views, anything else is read into a new {@link ArrayList} per batch
+	 * @param items
+	 * @param maxElements
+	 * @return an iterator over the batches, the last one may be smaller
+	 */
+	public static <O> Iterator<List<O>> batches(Iterable<O> items, int maxElements) {
+		checkBatchSize(maxElements);
+		if (items instanceof List) {
+			return partition((List<O>) items, maxElements).iterator();
+		}
+		return new BatchIterator<O>(items.iterator(), maxElements);
+	}
+
+	/**
+	 * Splits the <b>items</b> into batches like {@link #batches(Iterable, int)} and hands every batch to the <b>handler</b> on the <b>executor</b>.<br>
+	 * At most <b>maxInFlight</b> batches are submitted and not finished at any time, the calling thread waits for a free slot before reading the next batch,
+	 * so the batch I/O is pipelined without reading everything in memory.<br>
+	 * After the first failure no more batches are submitted, the method waits for the running ones and throws.
+	 * @param items
+	 * @param maxElements the maximum size of a batch
+	 * @param handler called for every batch, for instance a batch insert
+	 * @param executor
+	 * @param maxInFlight
+	 * @return the number of batches that were handled
+	 * @throws ExecutionException wrapping the first exception thrown by the handler
+	 * @throws InterruptedException
+	 */
+	public static <O> int dispatchBatches(Iterable<O> items, int maxElements, final IEvaluatorWithException<? super List<O>, ?> handler,
+			Executor executor, int maxInFlight) throws ExecutionException, InterruptedException {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one batch must be in flight");
+		}
+		final Semaphore window = new Semaphore(maxInFlight);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Iterator<List<O>> batches = batches(items, maxElements);
+		int count = 0;
+		while (failure.get() == null && batches.hasNext()) {
+			window.acquire();
+			if (failure.get() != null) {
+				window.release();
+				break;
+			}
+			final List<O> batch = batches.next();
+			try {
+				executor.execute(new Runnable() {
+
+					/* (non-Javadoc)
+					 * @see java.lang.Runnable#run()
+					 */
+					@Override
+					public void run() {
+						try {
+							handler.evaluate(batch);
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						} finally {
+							window.release();
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				window.release();
+				failure.compareAndSet(null, e);
+				break;
+			}
+			count++;
+		}
+		window.acquire(maxInFlight); // wait for the running batches
+		window.release(maxInFlight);
+		Throwable t = failure.get();
+		if (t != null) {
+			throw new ExecutionException("Failed to handle batch", t);
+		}
+		return count;
+	}
+
+	/**
+	 * @param maxElements
+	 */
+	private static void checkBatchSize(int maxElements) {
+		if (maxElements < 1) {
+			throw new IllegalArgumentException("Invalid batch size " + maxElements);
+		}
+	}
+
+	/**
+	 * Evaluates and appends in a single pass, the builder is reused between calls on the same thread
 	 * @param collection
 	 * @param evaluator
 	 * @param emptyMessage
 	 * @return
 	 */
 	public static <O> String join(Collection<O> collection, IStringEvaluator<O> evaluator, String separator, String emptyMessage) {
-		List<String> strings = new ArrayList();
-		createCollection(collection, evaluator, strings);
+		StringBuilder sb = JOIN_BUILDER.get();
+		JOIN_BUILDER.set(null); // an evaluator that joins gets its own builder
+		if (sb == null) {
+			sb = new StringBuilder();
+		}
+		try {
+			if (collection != null) {
+				sb.ensureCapacity(estimateJoinLength(collection.size(), separator));
+			}
+			if (!appendJoined(sb, collection, evaluator, separator)) {
+				return emptyMessage;
+			}
+			return sb.toString();
+		} finally {
+			if (sb.capacity() <= MAX_REUSED_CAPACITY) {
+				sb.setLength(0);
+				JOIN_BUILDER.set(sb);
+			}
+		}
+	}
+
+	/**
+	 * Appends the evaluated values to the caller's builder, in a single pass
+	 * @param sb
+	 * @param collection
+	 * @param evaluator
+	 * @param separator
+	 * @param emptyMessage appended if no values
+	 * @return the builder
+	 */
+	public static <O> StringBuilder join(StringBuilder sb, Collection<O> collection, IStringEvaluator<O> evaluator, String separator,
+			String emptyMessage) {
+		if (collection != null) {
+			sb.ensureCapacity(sb.length() + estimateJoinLength(collection.size(), separator));
+		}
+		if (!appendJoined(sb, collection, evaluator, separator)) {
+			sb.append(emptyMessage);
+		}
+		return sb;
+	}
 
-		Iterator<String> iterator = strings.iterator();
-		if (iterator.hasNext()) {
-			return UString.join(iterator, separator);
+	/**
+	 * Writes the evaluated values straight to the output, in a single pass, without building a String
+	 * @param out for instance a {@link java.io.Writer}
+	 * @param collection
+	 * @param evaluator
+	 * @param separator
+	 * @param emptyMessage written if no values
+	 * @return the output
+	 * @throws IOException
+	 */
+	public static <O, A extends Appendable> A joinTo(A out, Collection<O> collection, IStringEvaluator<O> evaluator, String separator,
+			String emptyMessage) throws IOException {
+		if (!appendJoined(out, collection, evaluator, separator)) {
+			out.append(emptyMessage);
+		}
+		return out;
+	}
+
+	/**
+	 * same rules as {@link #createCollection(Collection, IEvaluator, Collection)}, null objects and null values are skipped
+	 * @param out
+	 * @param collection
+	 * @param evaluator
+	 * @param separator
+	 * @return true if something was appended
+	 */
+	private static <O> boolean appendJoined(StringBuilder out, Collection<O> collection, IStringEvaluator<O> evaluator, String separator) {
+		try {
+			return appendJoined((Appendable) out, collection, evaluator, separator);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // not going to happen
 		}
-		return emptyMessage;
+	}
+
+	/**
+	 * @param out
+	 * @param collection
+	 * @param evaluator
+	 * @param separator
+	 * @return true if something was appended
+	 * @throws IOException
+	 */
+	private static <O> boolean appendJoined(Appendable out, Collection<O> collection, IStringEvaluator<O> evaluator, String separator)
+			throws IOException {
+		if (collection == null) {
+			return false;
+		}
+		boolean first = true;
+		for (O o : collection) {
+			if (o == null) {
+				continue;
+			}
+			String value = evaluator.evaluate(o);
+			if (value == null) {
+				continue;
+			}
+			if (!first) {
+				out.append(separator);
+			}
+			out.append(value);
+			first = false;
+		}
+		return !first;
+	}
+
+	/**
+	 * @param size
+	 * @param separator
+	 * @return
+	 */
+	private static int estimateJoinLength(int size, String separator) {
+		long estimate = (long) size * (ESTIMATED_VALUE_LENGTH + (separator == null ? 4 : separator.length()));
+		return (int) Math.min(estimate, MAX_REUSED_CAPACITY);
 	}
 
 	/**
@@ -199,4 +542,80 @@ public class CollectionUtil {
 			throw new RuntimeException("Illegal implementation class " + clazz.getName());
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 21, 2013
+	 * @param <V>
+	 */
+	private static final class CollectionDupeChecker<V> implements IDupeChecker<V> {
+
+		private final Collection<V> collection;
+
+		/**
+		 * @param collection
+		 */
+		CollectionDupeChecker(Collection<V> collection) {
+			this.collection = collection;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.InternalEvaluator.IDupeChecker#checkIfDupe(java.lang.Object)
+		 */
+		@Override
+		public boolean checkIfDupe(V what) {
+			return collection.contains(what);
+		}
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Dec 6, 2013
+	 * @param <O>
+	 */
+	private static final class BatchIterator<O> implements Iterator<List<O>> {
+
+		private final Iterator<O> iterator;
+		private final int maxElements;
+
+		/**
+		 * @param iterator
+		 * @param maxElements
+		 */
+		BatchIterator(Iterator<O> iterator, int maxElements) {
+			this.iterator = iterator;
+			this.maxElements = maxElements;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public List<O> next() {
+			if (!iterator.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			List<O> batch = new ArrayList<O>(maxElements);
+			while (batch.size() < maxElements && iterator.hasNext()) {
+				batch.add(iterator.next());
+			}
+			return batch;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#remove()
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
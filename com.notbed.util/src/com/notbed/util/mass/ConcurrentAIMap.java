@@ -0,0 +1,265 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.notbed.util.Metrics;
+
+/**
+ * Concurrent Auto Initializing Map<br>
+ * Same contract as {@link AIMap}, but the <b>initializer</b> is evaluated at most once per key,
+ * threads asking for a key that is being initialized wait for that result, threads asking for other keys are not blocked.<br>
+ * Since the backing map is a {@link ConcurrentMap}, <b>null</b> keys and values are not supported,
+ * if the initializer evaluates to <b>null</b> nothing is stored and <b>null</b> is returned.
+ * @author Alexandru Bledea
+ * @since Nov 12, 2013
+ */
+public final class ConcurrentAIMap<K, X, I, V extends X> implements Map<K, V> {
+
+	/**
+	 * {@link Metrics} counter and timer of the initializer
+	 */
+	public static final String INITIALIZER_METRIC = "ConcurrentAIMap.initializer";
+
+	private final ConcurrentMap<K, V> map;
+	private final ConcurrentMap<K, FutureTask<V>> pending = new ConcurrentHashMap<K, FutureTask<V>>();
+	private final IEvaluator<I, X> initializer;
+	private final String metricName;
+
+	/**
+	 * @param initializer
+	 */
+	public ConcurrentAIMap(IEvaluator<I, X> initializer) {
+		this(new ConcurrentHashMap<K, V>(), initializer);
+	}
+
+	/**
+	 * @param map
+	 * @param initializer
+	 */
+	public ConcurrentAIMap(ConcurrentMap<K, V> map, IEvaluator<I, X> initializer) {
+		this(map, initializer, INITIALIZER_METRIC);
+	}
+
+	/**
+	 * @param map
+	 * @param initializer
+	 * @param metricName the {@link Metrics} counter and timer of the initializer
+	 */
+	ConcurrentAIMap(ConcurrentMap<K, V> map, IEvaluator<I, X> initializer, String metricName) {
+		if ((this.map = map) == null || (this.initializer = initializer) == null) {
+			throw new NullPointerException("Missing map or initializer");
+		}
+		this.metricName = metricName;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#size()
+	 */
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsValue(java.lang.Object)
+	 */
+	@Override
+	public boolean containsValue(Object value) {
+		return map.containsValue(value);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#get(java.lang.Object)
+	 */
+	@Override
+	public V get(Object key) {
+		V value = map.get(key);
+		if (value != null) {
+			return value;
+		}
+		final K k = (K) key;
+		FutureTask<V> task = pending.get(k);
+		if (task == null) {
+			FutureTask<V> newTask = new FutureTask<V>(new Callable<V>() {
+
+				/* (non-Javadoc)
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public V call() throws Exception {
+					return load(k);
+				}
+			});
+			task = pending.putIfAbsent(k, newTask);
+			if (task == null) {
+				task = newTask;
+				try {
+					task.run();
+				} finally {
+					pending.remove(k, task);
+				}
+			}
+		}
+		return waitFor(task);
+	}
+
+	/**
+	 * called only by the thread that won the race for the key
+	 * @param key
+	 * @return
+	 */
+	private V load(K key) {
+		V value = map.get(key);
+		if (value != null) {
+			return value; // loaded between our first look and the registration of the task
+		}
+//		same unchecked conversion as in MapUtil.get
+		value = (V) InitializerMetrics.evaluate(metricName, initializer, (I) key);
+		if (value != null) {
+			V previous = map.putIfAbsent(key, value);
+			if (previous != null) {
+				return previous; // somebody used put in the meantime
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @param task
+	 * @return
+	 */
+	private V waitFor(FutureTask<V> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new RuntimeException("Error initializing value", cause);
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V put(K key, V value) {
+		return map.put(key, value);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#remove(java.lang.Object)
+	 */
+	@Override
+	public V remove(Object key) {
+		return map.remove(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#putAll(java.util.Map)
+	 */
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		map.putAll(m);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#clear()
+	 */
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#keySet()
+	 */
+	@Override
+	public Set<K> keySet() {
+		return map.keySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#values()
+	 */
+	@Override
+	public Collection<V> values() {
+		return map.values();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#entrySet()
+	 */
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return map.entrySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+
+	/**
+	 * Creates a {@link ConcurrentAIMap} backed by a {@link ConcurrentHashMap}<br>
+	 * @param initializer
+	 * @return
+	 */
+	public final static <K, X, I, V extends X> Map<K, V> create(IEvaluator<I, X> initializer) {
+		return new ConcurrentAIMap<K, X, I, V>(initializer);
+	}
+
+	/**
+	 * Wraps a ConcurrentMap into a {@link ConcurrentAIMap} <br>
+	 * @param map
+	 * @param initializer
+	 * @return
+	 */
+	public final static <K, X, I, V extends X> Map<K, V> wrap(ConcurrentMap<K, V> map, IEvaluator<I, X> initializer) {
+		return new ConcurrentAIMap<K, X, I, V>(map, initializer);
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Evaluates every object on its own task, with at most <b>maxConcurrency</b> tasks submitted and not finished at any time,
+ * the calling thread waits for a free slot before submitting the next one, like {@link CollectionUtil#dispatchBatches}.<br>
+ * The results are kept by input position, so the callers can build their result in input order.
+ * @author Alexandru Bledea
+ * @since Dec 23, 2013
+ */
+final class ConcurrentEvaluator<O, R> {
+
+	private final Object[] objects;
+	private final Object[] results;
+	private final Throwable[] failures;
+	private final IEvaluatorWithException<O, R> evaluator;
+	private final FailurePolicy policy;
+	private final Semaphore window;
+	private final int maxConcurrency;
+	private volatile boolean stopped;
+
+	/**
+	 * @param objects
+	 * @param evaluator
+	 * @param maxConcurrency
+	 * @param policy
+	 */
+	private ConcurrentEvaluator(Object[] objects, IEvaluatorWithException<O, R> evaluator, int maxConcurrency, FailurePolicy policy) {
+		this.objects = objects;
+		this.results = new Object[objects.length];
+		this.failures = new Throwable[objects.length];
+		this.evaluator = evaluator;
+		this.policy = policy;
+		this.maxConcurrency = maxConcurrency;
+		this.window = new Semaphore(maxConcurrency);
+	}
+
+	/**
+	 * @param objects
+	 * @param evaluator
+	 * @param executor
+	 * @param maxConcurrency
+	 * @param policy
+	 * @return the finished evaluation, read with {@link #object(int)} and {@link #result(int)}
+	 * @throws MassEvaluationException
+	 * @throws InterruptedException the submitted evaluations are waited for, the others are not started
+	 */
+	static <O, R> ConcurrentEvaluator<O, R> evaluate(Collection<? extends O> objects, IEvaluatorWithException<O, R> evaluator, Executor executor,
+			int maxConcurrency, FailurePolicy policy) throws MassEvaluationException, InterruptedException {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("At least one evaluation must run at a time");
+		}
+		if (evaluator == null || executor == null || policy == null) {
+			throw new NullPointerException("Missing evaluator, executor or failure policy");
+		}
+		ConcurrentEvaluator<O, R> evaluation = new ConcurrentEvaluator<O, R>(objects == null ? new Object[0] : objects.toArray(), evaluator,
+				maxConcurrency, policy);
+		evaluation.run(executor);
+		return evaluation;
+	}
+
+	/**
+	 * @return how many objects there were, the null ones included
+	 */
+	int size() {
+		return objects.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the object at that position in the input, null objects were not evaluated
+	 */
+	O object(int index) {
+		return (O) objects[index];
+	}
+
+	/**
+	 * @param index
+	 * @return its evaluation
+	 */
+	R result(int index) {
+		return (R) results[index];
+	}
+
+	/**
+	 * @param executor
+	 * @throws MassEvaluationException
+	 * @throws InterruptedException
+	 */
+	private void run(Executor executor) throws MassEvaluationException, InterruptedException {
+		try {
+			for (int i = 0; i < objects.length && !stopped; i++) {
+				if (objects[i] == null) {
+					continue;
+				}
+				window.acquire();
+				if (stopped) {
+					window.release();
+					break;
+				}
+				try {
+					executor.execute(new Evaluation(i));
+				} catch (RuntimeException e) {
+					window.release();
+					failures[i] = e;
+					stopped = true; // the executor won't take the next ones either
+				}
+			}
+		} catch (InterruptedException e) {
+			stopped = true;
+			waitForRunning();
+			throw e;
+		}
+		waitForRunning();
+		SortedMap<Integer, Throwable> failed = new TreeMap<Integer, Throwable>();
+		for (int i = 0; i < failures.length; i++) {
+			if (failures[i] != null) {
+				failed.put(i, failures[i]);
+			}
+		}
+		if (!failed.isEmpty()) {
+			throw new MassEvaluationException(failed, objects.length);
+		}
+	}
+
+	/**
+	 * also publishes the results and failures of the evaluations to the calling thread
+	 */
+	private void waitForRunning() {
+		window.acquireUninterruptibly(maxConcurrency);
+		window.release(maxConcurrency);
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Dec 23, 2013
+	 */
+	private final class Evaluation implements Runnable {
+
+		private final int index;
+
+		/**
+		 * @param index
+		 */
+		Evaluation(int index) {
+			this.index = index;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				if (stopped) {
+					return; // an earlier evaluation failed
+				}
+				results[index] = evaluator.evaluate((O) objects[index]);
+			} catch (Throwable t) {
+				failures[index] = t;
+				if (policy == FailurePolicy.FAIL_FAST) {
+					stopped = true;
+				}
+			} finally {
+				window.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts created by {@link MapUtil#countBy(java.util.Collection, IEvaluator)}, the counters are primitive and updated in place
+ * @author Alexandru Bledea
+ * @since Dec 1, 2013
+ */
+public final class CountMap<K> {
+
+	private final Map<K, int[]> counters;
+
+	/**
+	 * @param expectedKeys
+	 */
+	CountMap(int expectedKeys) {
+		counters = new HashMap<K, int[]>(InternalEvaluator.hashCapacity(expectedKeys));
+	}
+
+	/**
+	 * @param key
+	 */
+	void increment(K key) {
+		int[] counter = counters.get(key);
+		if (counter == null) {
+			counters.put(key, new int[] { 1 });
+		} else {
+			counter[0]++;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return how many objects evaluated to the key
+	 */
+	public int get(Object key) {
+		int[] counter = counters.get(key);
+		return counter == null ? 0 : counter[0];
+	}
+
+	/**
+	 * @return the keys
+	 */
+	public Set<K> keySet() {
+		return Collections.unmodifiableSet(counters.keySet());
+	}
+
+	/**
+	 * @return the number of keys
+	 */
+	public int size() {
+		return counters.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder().append('{');
+		for (Map.Entry<K, int[]> entry : counters.entrySet()) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(entry.getKey()).append('=').append(entry.getValue()[0]);
+		}
+		return sb.append('}').toString();
+	}
+}
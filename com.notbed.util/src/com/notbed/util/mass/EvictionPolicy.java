@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+/**
+ * The eviction policies supported by {@link BoundedAIMap}
+ * @author Alexandru Bledea
+ * @since Nov 14, 2013
+ */
+public enum EvictionPolicy {
+
+	/**
+	 * least recently used entries are evicted first
+	 */
+	LRU {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionPolicy#createQueue(long)
+		 */
+		@Override
+		<K, V> EvictionQueue<K, V> createQueue(long maximumWeight) {
+			return new EvictionQueue.LruQueue<K, V>();
+		}
+	},
+
+	/**
+	 * least frequently used entries are evicted first, ties are broken by recency
+	 */
+	LFU {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionPolicy#createQueue(long)
+		 */
+		@Override
+		<K, V> EvictionQueue<K, V> createQueue(long maximumWeight) {
+			return new EvictionQueue.LfuQueue<K, V>();
+		}
+	},
+
+	/**
+	 * a small LRU admission window in front of a segmented LRU main space,
+	 * entries leaving the window only replace main entries that were used less often (W-TinyLFU)
+	 */
+	TINY_LFU {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionPolicy#createQueue(long)
+		 */
+		@Override
+		<K, V> EvictionQueue<K, V> createQueue(long maximumWeight) {
+			return new EvictionQueue.TinyLfuQueue<K, V>(maximumWeight);
+		}
+	};
+
+	/**
+	 * @param maximumWeight
+	 * @return
+	 */
+	abstract <K, V> EvictionQueue<K, V> createQueue(long maximumWeight);
+}
@@ -0,0 +1,386 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the entries of a {@link BoundedAIMap} and decides which one goes away next.<br>
+ * Not thread safe, the map is responsible for the locking.
+ * @author Alexandru Bledea
+ * @since Nov 14, 2013
+ */
+abstract class EvictionQueue<K, V> {
+
+	/**
+	 * @param node a node that was just added to the map
+	 */
+	abstract void onAdd(Node<K, V> node);
+
+	/**
+	 * @param node a node that was just read or overwritten
+	 */
+	abstract void onAccess(Node<K, V> node);
+
+	/**
+	 * @param node a node that was just removed from the map
+	 */
+	abstract void onRemove(Node<K, V> node);
+
+	/**
+	 * @return the node that should be evicted, already unlinked from the queue
+	 */
+	abstract Node<K, V> evict();
+
+	/**
+	 *
+	 */
+	abstract void clear();
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 14, 2013
+	 */
+	static final class Node<K, V> {
+
+		final K key;
+		V value;
+		int weight;
+
+		Node<K, V> prev;
+		Node<K, V> next;
+		int queue;
+		long frequency;
+		long tick;
+
+		/**
+		 * @param key
+		 * @param value
+		 * @param weight
+		 */
+		Node(K key, V value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Intrusive doubly linked list of nodes, the head is the oldest
+	 * @author Alexandru Bledea
+	 * @since Nov 14, 2013
+	 */
+	static final class NodeList<K, V> {
+
+		Node<K, V> head;
+		Node<K, V> tail;
+		long weight;
+
+		/**
+		 * @param node
+		 */
+		void add(Node<K, V> node) {
+			node.prev = tail;
+			node.next = null;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+			weight += node.weight;
+		}
+
+		/**
+		 * @param node
+		 */
+		void remove(Node<K, V> node) {
+			if (node.prev == null) {
+				head = node.next;
+			} else {
+				node.prev.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.prev = null;
+			node.next = null;
+			weight -= node.weight;
+		}
+
+		/**
+		 * @param node
+		 */
+		void moveToTail(Node<K, V> node) {
+			if (node != tail) {
+				remove(node);
+				add(node);
+			}
+		}
+
+		/**
+		 * @return the removed head or null if empty
+		 */
+		Node<K, V> poll() {
+			Node<K, V> node = head;
+			if (node != null) {
+				remove(node);
+			}
+			return node;
+		}
+
+		/**
+		 *
+		 */
+		void clear() {
+			head = null;
+			tail = null;
+			weight = 0;
+		}
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 14, 2013
+	 */
+	static final class LruQueue<K, V> extends EvictionQueue<K, V> {
+
+		private final NodeList<K, V> list = new NodeList<K, V>();
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAdd(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAdd(Node<K, V> node) {
+			list.add(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAccess(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAccess(Node<K, V> node) {
+			list.moveToTail(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onRemove(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onRemove(Node<K, V> node) {
+			list.remove(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#evict()
+		 */
+		@Override
+		Node<K, V> evict() {
+			return list.poll();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#clear()
+		 */
+		@Override
+		void clear() {
+			list.clear();
+		}
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 14, 2013
+	 */
+	static final class LfuQueue<K, V> extends EvictionQueue<K, V> {
+
+		private final TreeSet<Node<K, V>> nodes = new TreeSet<Node<K, V>>(new Comparator<Node<K, V>>() {
+
+			/* (non-Javadoc)
+			 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+			 */
+			@Override
+			public int compare(Node<K, V> o1, Node<K, V> o2) {
+				if (o1.frequency != o2.frequency) {
+					return o1.frequency < o2.frequency ? -1 : 1;
+				}
+				return o1.tick < o2.tick ? -1 : (o1.tick == o2.tick ? 0 : 1);
+			}
+		});
+		private long clock;
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAdd(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAdd(Node<K, V> node) {
+			node.tick = ++clock;
+			node.frequency++;
+			nodes.add(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAccess(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAccess(Node<K, V> node) {
+			nodes.remove(node);
+			onAdd(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onRemove(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onRemove(Node<K, V> node) {
+			nodes.remove(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#evict()
+		 */
+		@Override
+		Node<K, V> evict() {
+			return nodes.pollFirst();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#clear()
+		 */
+		@Override
+		void clear() {
+			nodes.clear();
+		}
+	}
+
+	/**
+	 * Window TinyLFU, new entries go into a LRU window of about 1% of the capacity,
+	 * when they leave the window they are put on probation in the main space,
+	 * probation entries that are read again become protected.<br>
+	 * When something has to be evicted the newest probation entry competes against the oldest one,
+	 * the one with the lower estimated frequency loses.
+	 * @author Alexandru Bledea
+	 * @since Nov 14, 2013
+	 */
+	static final class TinyLfuQueue<K, V> extends EvictionQueue<K, V> {
+
+		private static final int WINDOW = 0;
+		private static final int PROBATION = 1;
+		private static final int PROTECTED = 2;
+
+		private final NodeList<K, V> window = new NodeList<K, V>();
+		private final NodeList<K, V> probation = new NodeList<K, V>();
+		private final NodeList<K, V> protectedList = new NodeList<K, V>();
+		private final FrequencySketch sketch;
+		private final long windowMax;
+		private final long protectedMax;
+
+		/**
+		 * @param maximumWeight
+		 */
+		TinyLfuQueue(long maximumWeight) {
+			sketch = new FrequencySketch(maximumWeight);
+			windowMax = Math.max(1, maximumWeight / 100);
+			protectedMax = (maximumWeight - windowMax) / 5 * 4;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAdd(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAdd(Node<K, V> node) {
+			sketch.increment(node.key);
+			node.queue = WINDOW;
+			window.add(node);
+			while (window.weight > windowMax) {
+				Node<K, V> candidate = window.poll();
+				candidate.queue = PROBATION;
+				probation.add(candidate);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onAccess(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onAccess(Node<K, V> node) {
+			sketch.increment(node.key);
+			switch (node.queue) {
+				case WINDOW:
+					window.moveToTail(node);
+					break;
+				case PROBATION:
+					probation.remove(node);
+					node.queue = PROTECTED;
+					protectedList.add(node);
+					while (protectedList.weight > protectedMax && protectedList.head != node) {
+						Node<K, V> demoted = protectedList.poll();
+						demoted.queue = PROBATION;
+						probation.add(demoted);
+					}
+					break;
+				default:
+					protectedList.moveToTail(node);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#onRemove(com.notbed.util.mass.EvictionQueue.Node)
+		 */
+		@Override
+		void onRemove(Node<K, V> node) {
+			listOf(node).remove(node);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#evict()
+		 */
+		@Override
+		Node<K, V> evict() {
+			Node<K, V> victim = probation.head;
+			if (victim == null) {
+				victim = protectedList.head != null ? protectedList.head : window.head;
+				if (victim != null) {
+					listOf(victim).remove(victim);
+				}
+				return victim;
+			}
+			Node<K, V> candidate = probation.tail;
+			if (candidate != victim && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+				victim = candidate; // not admitted
+			}
+			probation.remove(victim);
+			return victim;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.EvictionQueue#clear()
+		 */
+		@Override
+		void clear() {
+			window.clear();
+			probation.clear();
+			protectedList.clear();
+			sketch.clear();
+		}
+
+		/**
+		 * @param node
+		 * @return
+		 */
+		private NodeList<K, V> listOf(Node<K, V> node) {
+			switch (node.queue) {
+				case WINDOW:
+					return window;
+				case PROBATION:
+					return probation;
+				default:
+					return protectedList;
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.LogFactory;
+
+import com.notbed.util.IClearable;
+import com.notbed.util.IDroppableCache;
+import com.notbed.util.Metrics;
+
+/**
+ * Expiring Auto Initializing Map<br>
+ * Works like {@link ConcurrentAIMap}, the <b>initializer</b> is evaluated at most once per key, but entries also expire:
+ * <ul>
+ * <li><b>expireAfterWrite</b> - the entry is reloaded if it was loaded or put more than this time ago</li>
+ * <li><b>expireAfterAccess</b> - the entry is reloaded if nobody read it for this time</li>
+ * <li><b>refreshAfterWrite</b> - once an entry is older than this, the next read triggers one reload on the <b>executor</b>,
+ * the old value is served until the new value is ready, so hot keys never block on reload</li>
+ * </ul>
+ * A value of 0 disables an option. Refresh ahead is only useful when it is shorter than <b>expireAfterWrite</b>.<br>
+ * Expired entries are removed when they are read or by {@link #cleanUp()}, until then they are still counted by {@link #size()}.<br>
+ * {@link #keySet()}, {@link #values()} and {@link #entrySet()} return unmodifiable snapshots of the entries that did not expire.
+ * @author Alexandru Bledea
+ * @since Nov 16, 2013
+ */
+public final class ExpiringAIMap<K, X, I, V extends X> implements Map<K, V>, IDroppableCache, IClearable {
+
+	/**
+	 * {@link Metrics} counter and timer of the initializer, loads and refreshes
+	 */
+	public static final String INITIALIZER_METRIC = "ExpiringAIMap.initializer";
+
+	private final ConcurrentMap<K, TimedValue<V>> entries = new ConcurrentHashMap<K, TimedValue<V>>();
+	private final ConcurrentAIMap<K, Object, I, TimedValue<V>> loader;
+	private final IEvaluator<I, X> initializer;
+	private final long expireAfterWriteNanos;
+	private final long expireAfterAccessNanos;
+	private final long refreshAfterWriteNanos;
+	private final Executor executor;
+
+	/**
+	 * @param initializer
+	 * @param expireAfterWrite
+	 * @param expireAfterAccess
+	 * @param unit
+	 */
+	public ExpiringAIMap(IEvaluator<I, X> initializer, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
+		this(initializer, expireAfterWrite, expireAfterAccess, 0, unit, null);
+	}
+
+	/**
+	 * @param initializer
+	 * @param expireAfterWrite
+	 * @param expireAfterAccess
+	 * @param refreshAfterWrite
+	 * @param unit
+	 * @param executor where the refreshes run, required if <b>refreshAfterWrite</b> is used
+	 */
+	public ExpiringAIMap(final IEvaluator<I, X> initializer, long expireAfterWrite, long expireAfterAccess, long refreshAfterWrite,
+			TimeUnit unit, Executor executor) {
+		if (initializer == null || unit == null) {
+			throw new NullPointerException("Missing initializer or time unit");
+		}
+		if (expireAfterWrite < 0 || expireAfterAccess < 0 || refreshAfterWrite < 0) {
+			throw new IllegalArgumentException("Negative duration");
+		}
+		if (refreshAfterWrite > 0 && executor == null) {
+			throw new NullPointerException("Missing refresh executor");
+		}
+		this.initializer = initializer;
+		this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+		this.expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
+		this.refreshAfterWriteNanos = unit.toNanos(refreshAfterWrite);
+		this.executor = executor;
+		this.loader = new ConcurrentAIMap<K, Object, I, TimedValue<V>>(entries, new IEvaluator<I, Object>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+			 */
+			@Override
+			public Object evaluate(I obj) {
+				return new TimedValue<V>((V) initializer.evaluate(obj), System.nanoTime());
+			}
+		}, INITIALIZER_METRIC);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#get(java.lang.Object)
+	 */
+	@Override
+	public V get(Object key) {
+		long now = System.nanoTime();
+		TimedValue<V> timed = entries.get(key);
+		if (timed != null) {
+			if (!isExpired(timed, now)) {
+				if (expireAfterAccessNanos > 0) {
+					timed.accessTime = now;
+				}
+				if (refreshAfterWriteNanos > 0 && now - timed.writeTime >= refreshAfterWriteNanos) {
+					refresh((K) key, timed);
+				}
+				return timed.value;
+			}
+			entries.remove(key, timed);
+		}
+		return loader.get(key).value;
+	}
+
+	/**
+	 * schedules one reload for the entry, unless one is already running
+	 * @param key
+	 * @param stale
+	 */
+	private void refresh(final K key, final TimedValue<V> stale) {
+		if (!stale.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+
+				/* (non-Javadoc)
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					try {
+						V value = (V) InitializerMetrics.evaluate(INITIALIZER_METRIC, initializer, (I) key);
+						entries.replace(key, stale, new TimedValue<V>(value, System.nanoTime()));
+					} catch (Throwable t) {
+						stale.refreshing.set(false);
+						LogFactory.getLog(ExpiringAIMap.class).error("Failed to refresh " + key, t);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			stale.refreshing.set(false); // rejected, we'll try again on the next read
+			LogFactory.getLog(ExpiringAIMap.class).warn("Could not schedule refresh for " + key, e);
+		}
+	}
+
+	/**
+	 * @param timed
+	 * @param now
+	 * @return
+	 */
+	private boolean isExpired(TimedValue<V> timed, long now) {
+		return (expireAfterWriteNanos > 0 && now - timed.writeTime >= expireAfterWriteNanos)
+				|| (expireAfterAccessNanos > 0 && now - timed.accessTime >= expireAfterAccessNanos);
+	}
+
+	/**
+	 * removes all the expired entries
+	 */
+	public void cleanUp() {
+		long now = System.nanoTime();
+		Iterator<Entry<K, TimedValue<V>>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (isExpired(iterator.next().getValue(), now)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#size()
+	 */
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		TimedValue<V> timed = entries.get(key);
+		return timed != null && !isExpired(timed, System.nanoTime());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#containsValue(java.lang.Object)
+	 */
+	@Override
+	public boolean containsValue(Object value) {
+		return snapshot().containsValue(value);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V put(K key, V value) {
+		return unwrap(entries.put(key, new TimedValue<V>(value, System.nanoTime())));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#remove(java.lang.Object)
+	 */
+	@Override
+	public V remove(Object key) {
+		return unwrap(entries.remove(key));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#putAll(java.util.Map)
+	 */
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#clear()
+	 */
+	@Override
+	public void clear() {
+		entries.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.notbed.util.IDroppableCache#dropCache()
+	 */
+	@Override
+	public void dropCache() {
+		clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#keySet()
+	 */
+	@Override
+	public Set<K> keySet() {
+		return Collections.unmodifiableSet(snapshot().keySet());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#values()
+	 */
+	@Override
+	public Collection<V> values() {
+		return Collections.unmodifiableCollection(new ArrayList<V>(snapshot().values()));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Map#entrySet()
+	 */
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return Collections.unmodifiableMap(snapshot()).entrySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * @return the entries that did not expire
+	 */
+	private Map<K, V> snapshot() {
+		long now = System.nanoTime();
+		Map<K, V> snapshot = new LinkedHashMap<K, V>();
+		for (Entry<K, TimedValue<V>> entry : entries.entrySet()) {
+			TimedValue<V> timed = entry.getValue();
+			if (!isExpired(timed, now)) {
+				snapshot.put(entry.getKey(), timed.value);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @param timed
+	 * @return
+	 */
+	private static <V> V unwrap(TimedValue<V> timed) {
+		return timed == null ? null : timed.value;
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 16, 2013
+	 * @param <V>
+	 */
+	private static final class TimedValue<V> {
+
+		private final V value;
+		private final long writeTime;
+		private volatile long accessTime;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		/**
+		 * @param value
+		 * @param writeTime
+		 */
+		TimedValue(V value, long writeTime) {
+			this.value = value;
+			this.writeTime = writeTime;
+			this.accessTime = writeTime;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+/**
+ * What the concurrent mass evaluations do when an evaluation fails,
+ * see {@link MapUtil#generateMap(java.util.Collection, IEvaluatorWithException, java.util.concurrent.Executor, int, FailurePolicy)}
+ * @author Alexandru Bledea
+ * @since Dec 23, 2013
+ */
+public enum FailurePolicy {
+
+	/**
+	 * nothing new is started after the first failure, the running evaluations are waited for
+	 */
+	FAIL_FAST,
+
+	/**
+	 * everything is evaluated, all the failures are reported together
+	 */
+	COLLECT_ALL;
+
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch with 4 bit counters used to estimate how often a key was seen.<br>
+ * All the counters are halved once the number of increments reaches ten times the maximum size, so old popularity fades away.
+ * @author Alexandru Bledea
+ * @since Nov 14, 2013
+ */
+final class FrequencySketch {
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f };
+	private static final int MAX_COUNT = 15;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	/**
+	 * @param maximumSize
+	 */
+	FrequencySketch(long maximumSize) {
+		int maximum = (int) Math.min(Math.max(maximumSize, 16), 1 << 24);
+		table = new long[Integer.highestOneBit(maximum - 1) << 1];
+		tableMask = table.length - 1;
+		sampleSize = 10 * maximum;
+	}
+
+	/**
+	 * @param key
+	 * @return the estimated number of times the key was seen, at most 15
+	 */
+	int frequency(Object key) {
+		int hash = spread(key);
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int h = hash(hash, i);
+			int offset = offset(h);
+			frequency = Math.min(frequency, (int) ((table[h & tableMask] >>> offset) & 0xF));
+		}
+		return frequency;
+	}
+
+	/**
+	 * @param key
+	 */
+	void increment(Object key) {
+		int hash = spread(key);
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int h = hash(hash, i);
+			int index = h & tableMask;
+			int offset = offset(h);
+			if (((table[index] >>> offset) & 0xF) != MAX_COUNT) {
+				table[index] += 1L << offset;
+				added = true;
+			}
+		}
+		if (added && ++size == sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 *
+	 */
+	void clear() {
+		Arrays.fill(table, 0L);
+		size = 0;
+	}
+
+	/**
+	 * halves all the counters
+	 */
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size >>>= 1;
+	}
+
+	/**
+	 * @param h
+	 * @return the bit offset of the counter inside the slot
+	 */
+	private static int offset(int h) {
+		return (h >>> 28) << 2;
+	}
+
+	/**
+	 * @param hash
+	 * @param i
+	 * @return
+	 */
+	private static int hash(int hash, int i) {
+		int h = (hash + SEEDS[i]) * SEEDS[i];
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	private static int spread(Object key) {
+		int h = key == null ? 0 : key.hashCode();
+		h ^= h >>> 17;
+		h *= 0xed5ad4bb;
+		return h ^ (h >>> 11);
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Multimap created by {@link MapUtil#groupBy(java.util.Collection, IEvaluator)}, every key maps to the values that evaluated to it,
+ * in the order they were found.<br>
+ * The values are kept in array buckets, a single map lookup is done per value.
+ * @author Alexandru Bledea
+ * @since Dec 1, 2013
+ */
+public final class GroupedMap<K, V> {
+
+	private final Map<K, Bucket<V>> buckets;
+	private int valueCount;
+
+	/**
+	 * @param expectedKeys
+	 */
+	GroupedMap(int expectedKeys) {
+		buckets = new HashMap<K, Bucket<V>>(InternalEvaluator.hashCapacity(expectedKeys));
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 */
+	void add(K key, V value) {
+		Bucket<V> bucket = buckets.get(key);
+		if (bucket == null) {
+			buckets.put(key, bucket = new Bucket<V>());
+		}
+		bucket.append(value);
+		valueCount++;
+	}
+
+	/**
+	 * appends the values of <b>other</b> after the values of this map
+	 * @param other
+	 */
+	void addAll(GroupedMap<K, V> other) {
+		for (Entry<K, Bucket<V>> entry : other.buckets.entrySet()) {
+			Bucket<V> bucket = buckets.get(entry.getKey());
+			if (bucket == null) {
+				buckets.put(entry.getKey(), entry.getValue());
+			} else {
+				bucket.addAll(entry.getValue());
+			}
+		}
+		valueCount += other.valueCount;
+	}
+
+	/**
+	 * @param key
+	 * @return an unmodifiable list with the values of the key, empty if none
+	 */
+	public List<V> get(Object key) {
+		Bucket<V> bucket = buckets.get(key);
+		if (bucket == null) {
+			return Collections.emptyList();
+		}
+		return bucket;
+	}
+
+	/**
+	 * @param key
+	 * @return how many values are grouped under the key
+	 */
+	public int count(Object key) {
+		Bucket<V> bucket = buckets.get(key);
+		return bucket == null ? 0 : bucket.size;
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(Object key) {
+		return buckets.containsKey(key);
+	}
+
+	/**
+	 * @return the keys
+	 */
+	public Set<K> keySet() {
+		return Collections.unmodifiableSet(buckets.keySet());
+	}
+
+	/**
+	 * @return the number of keys
+	 */
+	public int size() {
+		return buckets.size();
+	}
+
+	/**
+	 * @return the number of values under all the keys
+	 */
+	public int valueCount() {
+		return valueCount;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return buckets.isEmpty();
+	}
+
+	/**
+	 * @return an unmodifiable map with the values of every key, the lists are views, not copies
+	 */
+	public Map<K, List<V>> asMap() {
+		Map<K, List<V>> map = new LinkedHashMap<K, List<V>>(InternalEvaluator.hashCapacity(buckets.size()));
+		map.putAll(buckets);
+		return Collections.unmodifiableMap(map);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return buckets.toString();
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Dec 1, 2013
+	 * @param <V>
+	 */
+	private static final class Bucket<V> extends AbstractList<V> {
+
+		private Object[] items = new Object[2];
+		private int size;
+
+		/**
+		 * @param value
+		 */
+		void append(V value) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size + (size >> 1) + 1);
+			}
+			items[size++] = value;
+		}
+
+		/**
+		 * @param other
+		 */
+		void addAll(Bucket<V> other) {
+			if (size + other.size > items.length) {
+				items = Arrays.copyOf(items, size + other.size);
+			}
+			System.arraycopy(other.items, 0, items, size, other.size);
+			size += other.size;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractList#get(int)
+		 */
+		@Override
+		public V get(int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return (V) items[index];
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.List;
+
+/**
+ * Evaluates a chunk of objects in one call, for key derivations that work better on many objects at once, like a JDBC batch fetch.<br>
+ * {@link MapUtil} and {@link CollectionUtil} hand their items to it in chunks of {@link BatchEvaluator#CHUNK_SIZE},
+ * see {@link BatchEvaluator} to use one where an {@link IEvaluator} is expected.
+ * @author Alexandru Bledea
+ * @since Dec 22, 2013
+ */
+public interface IBatchEvaluator<O, R> {
+
+	/**
+	 * Adds the evaluation of every object of <b>in</b> to <b>out</b>, in the same order.<br>
+	 * The objects are never null. Both lists are reused for the next chunk, don't change <b>in</b> and don't keep them.
+	 * @param in
+	 * @param out empty
+	 */
+	void evaluateAll(List<? extends O> in, List<? super R> out);
+
+}
@@ -0,0 +1,16 @@
+package com.notbed.util.mass;
+
+/**
+ * Evaluates an object into a primitive int, used to build {@link IntObjectMap}s without boxing the keys
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public interface IIntEvaluator<O> {
+
+	/**
+	 * @param obj
+	 * @return
+	 */
+	int evaluate(O obj);
+
+}
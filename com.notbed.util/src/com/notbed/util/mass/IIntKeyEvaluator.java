@@ -0,0 +1,16 @@
+package com.notbed.util.mass;
+
+/**
+ * Evaluates a primitive int key into a value, used to initialize the values of an {@link IntAIMap}
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public interface IIntKeyEvaluator<R> {
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	R evaluate(int key);
+
+}
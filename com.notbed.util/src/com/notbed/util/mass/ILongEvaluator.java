@@ -0,0 +1,16 @@
+package com.notbed.util.mass;
+
+/**
+ * Evaluates an object into a primitive long, used to build {@link LongObjectMap}s without boxing the keys
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public interface ILongEvaluator<O> {
+
+	/**
+	 * @param obj
+	 * @return
+	 */
+	long evaluate(O obj);
+
+}
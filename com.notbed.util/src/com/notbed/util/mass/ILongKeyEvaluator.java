@@ -0,0 +1,16 @@
+package com.notbed.util.mass;
+
+/**
+ * Evaluates a primitive long key into a value, used to initialize the values of a {@link LongAIMap}
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public interface ILongKeyEvaluator<R> {
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	R evaluate(long key);
+
+}
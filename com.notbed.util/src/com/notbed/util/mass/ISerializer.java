@@ -0,0 +1,25 @@
+package com.notbed.util.mass;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts objects to bytes and back, used by {@link OffHeapMap}.<br>
+ * The same object must always be serialized to the same bytes, keys are compared by their bytes.
+ * @author Alexandru Bledea
+ * @since Nov 27, 2013
+ */
+public interface ISerializer<T> {
+
+	/**
+	 * @param obj
+	 * @return
+	 */
+	byte[] serialize(T obj);
+
+	/**
+	 * @param buffer contains exactly the bytes of one object, from the position to the limit
+	 * @return
+	 */
+	T deserialize(ByteBuffer buffer);
+
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import com.notbed.util.ITimer;
+import com.notbed.util.Metrics;
+
+/**
+ * Counts and times the initializers of the AIMap family, under the same {@link Metrics} name for the counter and the timer.<br>
+ * The timer is stopped even if the initializer fails.
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+final class InitializerMetrics {
+
+	/**
+	 *
+	 */
+	private InitializerMetrics() {
+	}
+
+	/**
+	 * @param metricName
+	 * @param initializer
+	 * @param key
+	 * @return the initialized value
+	 */
+	static <O, R> R evaluate(String metricName, IEvaluator<? super O, ? extends R> initializer, O key) {
+		Metrics.counter(metricName).increment();
+		ITimer timer = Metrics.timer(metricName);
+		long start = timer.start();
+		try {
+			return initializer.evaluate(key);
+		} finally {
+			timer.stop(start);
+		}
+	}
+
+	/**
+	 * @param metricName
+	 * @param initializer
+	 * @param key
+	 * @return the initialized value
+	 */
+	static <R> R evaluate(String metricName, IIntKeyEvaluator<? extends R> initializer, int key) {
+		Metrics.counter(metricName).increment();
+		ITimer timer = Metrics.timer(metricName);
+		long start = timer.start();
+		try {
+			return initializer.evaluate(key);
+		} finally {
+			timer.stop(start);
+		}
+	}
+
+	/**
+	 * @param metricName
+	 * @param initializer
+	 * @param key
+	 * @return the initialized value
+	 */
+	static <R> R evaluate(String metricName, ILongKeyEvaluator<? extends R> initializer, long key) {
+		Metrics.counter(metricName).increment();
+		ITimer timer = Metrics.timer(metricName);
+		long start = timer.start();
+		try {
+			return initializer.evaluate(key);
+		} finally {
+			timer.stop(start);
+		}
+	}
+
+	/**
+	 * @param metricName
+	 * @param keyCount how many keys the evaluation initializes, the counter is increased by as much
+	 * @param initializer
+	 * @param keys
+	 * @return the initialized value or values
+	 * @throws Exception the failure of the initializer
+	 */
+	static <O, R> R evaluate(String metricName, int keyCount, IEvaluatorWithException<? super O, ? extends R> initializer, O keys) throws Exception {
+		Metrics.counter(metricName).add(keyCount);
+		ITimer timer = Metrics.timer(metricName);
+		long start = timer.start();
+		try {
+			return initializer.evaluate(keys);
+		} finally {
+			timer.stop(start);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collection;
+
+import com.notbed.util.Metrics;
+
+/**
+ * Auto Initializing Map with primitive int keys, the int counterpart of {@link AIMap}
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public final class IntAIMap<V> {
+
+	/**
+	 * {@link Metrics} counter and timer of the initializer
+	 */
+	public static final String INITIALIZER_METRIC = "IntAIMap.initializer";
+
+	private final IntObjectMap<V> map;
+	private final IIntKeyEvaluator<? extends V> initializer;
+
+	/**
+	 * @param initializer
+	 */
+	public IntAIMap(IIntKeyEvaluator<? extends V> initializer) {
+		this(new IntObjectMap<V>(), initializer);
+	}
+
+	/**
+	 * @param map
+	 * @param initializer
+	 */
+	public IntAIMap(IntObjectMap<V> map, IIntKeyEvaluator<? extends V> initializer) {
+		this.map = map;
+		this.initializer = initializer;
+	}
+
+	/**
+	 * @param key
+	 * @return the value mapped to the key, if there is none it is initialized and stored
+	 */
+	public V get(int key) {
+		V value = map.get(key);
+		if (value == null && !map.containsKey(key)) {
+			value = InitializerMetrics.evaluate(INITIALIZER_METRIC, initializer, key);
+			map.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(int key) {
+		return map.containsKey(key);
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public V put(int key, V value) {
+		return map.put(key, value);
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	public V remove(int key) {
+		return map.remove(key);
+	}
+
+	/**
+	 * @return
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	/**
+	 *
+	 */
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * @return
+	 */
+	public int[] keys() {
+		return map.keys();
+	}
+
+	/**
+	 * @return
+	 */
+	public Collection<V> values() {
+		return map.values();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+}
@@ -1,5 +1,13 @@
 package com.notbed.util.mass;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.notbed.util.ITimer;
 
 /**
  * @author Alexandru Bledea
@@ -7,17 +15,43 @@ package com.notbed.util.mass;
  */
 class InternalEvaluator {
 
+	/**
+	 * used when dupes are allowed, the checker is never asked
+	 */
+	static final IDupeChecker<Object> NO_DUPE_CHECK = new IDupeChecker<Object>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.InternalEvaluator.IDupeChecker#checkIfDupe(java.lang.Object)
+		 */
+		@Override
+		public boolean checkIfDupe(Object what) {
+			return false;
+		}
+	};
+
+	/**
+	 * @param expectedSize
+	 * @return the initial capacity of a hash based collection that holds <b>expectedSize</b> elements without rehashing
+	 */
+	static int hashCapacity(int expectedSize) {
+		if (expectedSize < 3) {
+			return expectedSize + 1;
+		}
+		return expectedSize < (1 << 30) / 4 * 3 ? (int) (expectedSize / 0.75f + 1) : Integer.MAX_VALUE;
+	}
+
 	/**
 	 * @param obj
 	 * @param skipNullObjects
 	 * @param generator
 	 * @param skipNullValues
 	 * @param result
+	 * @param timer measures the <b>generator</b>
 	 * @return
 	 * @throws DuplicateKeyException
 	 */
 	static <Result, Obj> EvaluationResult<Result> evaluate(Obj obj, boolean skipNullObjects, IEvaluator<Obj, Result> generator,
-			boolean skipNullValues, boolean allowDupes, IDupeChecker<Result> where, EvaluationResult<Result> result)
+			boolean skipNullValues, boolean allowDupes, IDupeChecker<Result> where, EvaluationResult<Result> result, ITimer timer)
 			throws DuplicateKeyException {
 		result.clear();
 		boolean skip = false;
@@ -28,7 +62,9 @@ class InternalEvaluator {
 				throw new NullPointerException("Null Value in Collection");
 			}
 		} else {
+			long start = timer.start();
 			Result evaluate = generator.evaluate(obj);
+			timer.stop(start);
 			if (evaluate == null && skipNullValues) {
 				skip = true;
 			} else {
@@ -42,6 +78,96 @@ class InternalEvaluator {
 		return result;
 	}
 
+	/**
+	 * Hands the objects of a collection to an {@link IBatchEvaluator} a chunk at a time, without the nulls.<br>
+	 * A null that is not skipped ends the chunk, the {@link NullPointerException} is thrown by the next read,
+	 * so the objects before it are handled first, like in a one by one evaluation.
+	 * @author Alexandru Bledea
+	 * @since Dec 22, 2013
+	 * @param <O>
+	 * @param <R>
+	 */
+	static final class ChunkEvaluator<O, R> {
+
+		private final Iterator<? extends O> source;
+		private final IBatchEvaluator<O, R> evaluator;
+		private final boolean skipNullObjects;
+		private final ITimer timer;
+		private final int chunkSize;
+		private final List<O> in;
+		private final List<R> out;
+		private boolean nullFound;
+
+		/**
+		 * @param objects
+		 * @param evaluator
+		 * @param skipNullObjects
+		 * @param timer measures every chunk, can be null
+		 */
+		ChunkEvaluator(Collection<? extends O> objects, IBatchEvaluator<O, R> evaluator, boolean skipNullObjects, ITimer timer) {
+			this.source = objects.iterator();
+			this.evaluator = evaluator;
+			this.skipNullObjects = skipNullObjects;
+			this.timer = timer;
+			this.chunkSize = Math.max(1, Math.min(objects.size(), BatchEvaluator.CHUNK_SIZE));
+			this.in = new ArrayList<O>(chunkSize);
+			this.out = new ArrayList<R>(chunkSize);
+		}
+
+		/**
+		 * reads and evaluates the next chunk
+		 * @return how many objects were evaluated, 0 once the source is exhausted
+		 * @throws NullPointerException if there is a null object and we don't skip it
+		 */
+		int next() {
+			in.clear();
+			out.clear();
+			if (nullFound) {
+				throw new NullPointerException("Null Value in Collection");
+			}
+			while (in.size() < chunkSize && source.hasNext()) {
+				O obj = source.next();
+				if (obj != null) {
+					in.add(obj);
+				} else if (!skipNullObjects) {
+					nullFound = true;
+					if (in.isEmpty()) {
+						throw new NullPointerException("Null Value in Collection");
+					}
+					break;
+				}
+			}
+			if (in.isEmpty()) {
+				return 0;
+			}
+			long start = timer == null ? 0 : System.nanoTime();
+			evaluator.evaluateAll(in, out);
+			if (timer != null) {
+				timer.record(System.nanoTime() - start);
+			}
+			if (out.size() != in.size()) {
+				throw new IllegalStateException("Expected " + in.size() + " results, got " + out.size());
+			}
+			return in.size();
+		}
+
+		/**
+		 * @param index
+		 * @return an object of the current chunk
+		 */
+		O object(int index) {
+			return in.get(index);
+		}
+
+		/**
+		 * @param index
+		 * @return its evaluation
+		 */
+		R result(int index) {
+			return out.get(index);
+		}
+	}
+
 	/**
 	 * @author Alexandru Bledea
 	 * @since Jul 31, 2013
@@ -56,6 +182,43 @@ class InternalEvaluator {
 		boolean checkIfDupe(What what);
 	}
 
+	/**
+	 * Checks dupes against a hash index of the collection, {@link Collection#contains(Object)} is linear for lists<br>
+	 * Every value added to the collection must also be added to the index.
+	 * @author Alexandru Bledea
+	 * @since Nov 21, 2013
+	 * @param <What>
+	 */
+	static final class HashIndexDupeChecker<What> implements IDupeChecker<What> {
+
+		private final Set<What> index;
+
+		/**
+		 * @param existing the values already in the collection
+		 * @param expectedSize how many values we expect to add
+		 */
+		HashIndexDupeChecker(Collection<? extends What> existing, int expectedSize) {
+			index = new HashSet<What>(hashCapacity(existing.size() + expectedSize));
+			index.addAll(existing);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.InternalEvaluator.IDupeChecker#checkIfDupe(java.lang.Object)
+		 */
+		@Override
+		public boolean checkIfDupe(What what) {
+			return index.contains(what);
+		}
+
+		/**
+		 * @param what
+		 * @return false if it was already in the index
+		 */
+		boolean add(What what) {
+			return index.add(what);
+		}
+	}
+
 	/**
 	 * @author Alexandru Bledea
 	 * @since Jul 31, 2013
@@ -0,0 +1,284 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Open addressing hash map with primitive long keys, the keys are never boxed.<br>
+ * Uses linear probing and backward shift deletion, <b>null</b> values are allowed.<br>
+ * The table arithmetic is in {@link OpenAddressing}, {@link IntObjectMap} is the same code with int keys, keep the two in sync.
+ * @author Alexandru Bledea
+ * @since Nov 24, 2013
+ */
+public class LongObjectMap<V> {
+
+	private static final long FREE = 0;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	private int resizeAt;
+
+	private boolean hasFreeKey;
+	private V freeKeyValue;
+
+	/**
+	 *
+	 */
+	public LongObjectMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 */
+	public LongObjectMap(int expectedSize) {
+		allocate(OpenAddressing.tableSize(expectedSize));
+	}
+
+	/**
+	 * @param key
+	 * @return the value mapped to the key, null if none
+	 */
+	public V get(long key) {
+		if (key == FREE) {
+			return hasFreeKey ? freeKeyValue : null;
+		}
+		long[] keys = this.keys;
+		int i = slot(key);
+		long k;
+		while ((k = keys[i]) != FREE) {
+			if (k == key) {
+				return (V) values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(long key) {
+		if (key == FREE) {
+			return hasFreeKey;
+		}
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return the previous value mapped to the key
+	 */
+	public V put(long key, V value) {
+		if (key == FREE) {
+			V previous = freeKeyValue;
+			if (!hasFreeKey) {
+				hasFreeKey = true;
+				size++;
+			}
+			freeKeyValue = value;
+			return previous;
+		}
+		int i = slot(key);
+		long k;
+		while ((k = keys[i]) != FREE) {
+			if (k == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		OpenAddressing.checkRoom(hasFreeKey ? size - 1 : size, resizeAt);
+		keys[i] = key;
+		values[i] = value;
+		if (++size >= resizeAt && OpenAddressing.canGrow(keys.length)) {
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @return the removed value
+	 */
+	public V remove(long key) {
+		if (key == FREE) {
+			if (!hasFreeKey) {
+				return null;
+			}
+			V previous = freeKeyValue;
+			hasFreeKey = false;
+			freeKeyValue = null;
+			size--;
+			return previous;
+		}
+		int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+		V previous = (V) values[i];
+		shiftBack(i);
+		size--;
+		return previous;
+	}
+
+	/**
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 *
+	 */
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		Arrays.fill(values, null);
+		hasFreeKey = false;
+		freeKeyValue = null;
+		size = 0;
+	}
+
+	/**
+	 * @return a new array with all the keys, in no particular order
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int j = 0;
+		if (hasFreeKey) {
+			result[j++] = FREE;
+		}
+		for (long k : keys) {
+			if (k != FREE) {
+				result[j++] = k;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new collection with all the values, in the same order as {@link #keys()}
+	 */
+	public Collection<V> values() {
+		Collection<V> result = new ArrayList<V>(size);
+		if (hasFreeKey) {
+			result.add(freeKeyValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				result.add((V) values[i]);
+			}
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size * 8 + 2).append('{');
+		long[] allKeys = keys();
+		for (int i = 0; i < allKeys.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(allKeys[i]).append('=').append(get(allKeys[i]));
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * @param key a key that is not {@link #FREE}
+	 * @return the index of the key or -1
+	 */
+	private int indexOf(long key) {
+		int i = slot(key);
+		long k;
+		while ((k = keys[i]) != FREE) {
+			if (k == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * closes the gap left by the removed slot so the probe chains stay intact
+	 * @param gap
+	 */
+	private void shiftBack(int gap) {
+		int i = gap;
+		while (true) {
+			i = (i + 1) & mask;
+			long k = keys[i];
+			if (k == FREE) {
+				break;
+			}
+			int home = slot(k);
+			if (OpenAddressing.canShift(i, home, gap, mask)) {
+				keys[gap] = k;
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		keys[gap] = FREE;
+		values[gap] = null;
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	private int slot(long key) {
+		return OpenAddressing.slot((int) (key ^ (key >>> 32)), mask);
+	}
+
+	/**
+	 * @param capacity
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long k = oldKeys[i];
+			if (k != FREE) {
+				int j = slot(k);
+				while (keys[j] != FREE) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * @param capacity
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeAt = OpenAddressing.resizeAt(capacity);
+	}
+}
@@ -1,12 +1,21 @@
 package com.notbed.util.mass;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import com.notbed.util.ITimer;
+import com.notbed.util.Metrics;
+import com.notbed.util.mass.InternalEvaluator.ChunkEvaluator;
 import com.notbed.util.mass.InternalEvaluator.EvaluationResult;
 import com.notbed.util.mass.InternalEvaluator.IDupeChecker;
 
@@ -16,6 +25,22 @@ import com.notbed.util.mass.InternalEvaluator.IDupeChecker;
  */
 public class MapUtil {
 
+	/**
+	 * collections smaller than this are always processed on the calling thread by the parallel methods
+	 */
+	public static final int PARALLEL_THRESHOLD = 10000;
+
+	/**
+	 * {@link Metrics} timer of the key generators of {@link #generateMap(Collection, IEvaluator)} and {@link #generateMapParallel(Collection, IEvaluator, boolean, boolean, boolean, ForkJoinPool, int)},
+	 * one sample per object
+	 */
+	public static final String GENERATE_MAP_TIMER = "MapUtil.generateMap";
+
+	/**
+	 * {@link Metrics} timer of the {@link IBatchEvaluator} key generators of {@link #generateMap(Collection, IEvaluator)}, one sample per chunk
+	 */
+	public static final String GENERATE_MAP_IN_CHUNKS_TIMER = "MapUtil.generateMapInChunks";
+
 	/**
 	 * Used to generate a map from the collection if <b>items</b> by using a <b>evaluator</b>. <br>
 	 * If there are two objects with the same key, the latest entry will override the previous entry<br>
@@ -69,7 +94,9 @@ public class MapUtil {
 	 * Used to generate a map from the collection if <b>items</b> by using a <b>evaluator</b>. <br>
 	 * Use <b>allowDupes</b> if you want values that evaluate to the same key to be added to the map. This will override the previous entry.<br>
 	 * Use <b>skipNullObjects</b> to avoid {@link java.lang.NullPointerException} if a null value is in the collection<br>
-	 * Use <b>skipNullValues</b> to skip adding object to the map it evaluates to null
+	 * Use <b>skipNullValues</b> to skip adding object to the map it evaluates to null<br>
+	 * If the <b>generator</b> is an {@link IBatchEvaluator}, like a {@link BatchEvaluator}, it gets the items a chunk at a time
+	 * and a whole chunk is evaluated before its duplicate keys are reported.
 	 * @param items the collection from which we create the map
 	 * @param generator the key generator
 	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link de.xwic.appkit.core.util.DuplicateKeyException}
@@ -85,12 +112,16 @@ public class MapUtil {
 		if (items == null) {
 			items = new ArrayList<Obj>();
 		}
+		if (generator instanceof IBatchEvaluator) {
+			return generateMapInChunks(items, (IBatchEvaluator<Obj, Key>) generator, allowDupes, skipNullObjects, skipNullValues);
+		}
 
 		EvaluationResult<Key> result = new EvaluationResult<Key>();
-		InternalHashMap<Key, Obj> map = new InternalHashMap<Key, Obj>();
+		InternalHashMap<Key, Obj> map = new InternalHashMap<Key, Obj>(items.size());
+		ITimer timer = Metrics.timer(GENERATE_MAP_TIMER);
 
 		for (Obj t : items) {
-			result = InternalEvaluator.evaluate(t, skipNullObjects, generator, skipNullValues, allowDupes, map, result);
+			result = InternalEvaluator.evaluate(t, skipNullObjects, generator, skipNullValues, allowDupes, map, result, timer);
 			if (!result.skip()) {
 				map.put(result.getResult(), t);
 			}
@@ -98,6 +129,313 @@ public class MapUtil {
 		return map;
 	}
 
+	/**
+	 * @param items
+	 * @param generator
+	 * @param allowDupes
+	 * @param skipNullObjects
+	 * @param skipNullValues
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	private static <Key, Obj> Map<Key, Obj> generateMapInChunks(Collection<? extends Obj> items, IBatchEvaluator<Obj, Key> generator,
+			boolean allowDupes, boolean skipNullObjects, boolean skipNullValues) throws DuplicateKeyException {
+		InternalHashMap<Key, Obj> map = new InternalHashMap<Key, Obj>(items.size());
+		ITimer timer = Metrics.isEnabled() ? Metrics.timer(GENERATE_MAP_IN_CHUNKS_TIMER) : null;
+		ChunkEvaluator<Obj, Key> chunks = new ChunkEvaluator<Obj, Key>(items, generator, skipNullObjects, timer);
+
+		int size;
+		while ((size = chunks.next()) > 0) {
+			for (int i = 0; i < size; i++) {
+				Key key = chunks.result(i);
+				if (key == null && skipNullValues) {
+					continue;
+				}
+				if (map.put(key, chunks.object(i)) != null && !allowDupes) {
+					throw new DuplicateKeyException(key);
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Used to generate a map with primitive int keys from the collection if <b>items</b> by using a <b>evaluator</b>, the keys are never boxed. <br>
+	 * If there are two objects with the same key, the latest entry will override the previous entry<br>
+	 * If there are <b>null</b> values in the collection they are skipped<br>
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @return a map created from the items using the generator
+	 */
+	public static <Obj> IntObjectMap<Obj> generateIntMap(Collection<? extends Obj> items, IIntEvaluator<Obj> generator) {
+		try {
+			return generateIntMap(items, generator, true, true);
+		} catch (DuplicateKeyException e) {
+			return null; // not going to happen
+		}
+	}
+
+	/**
+	 * Used to generate a map with primitive int keys from the collection if <b>items</b> by using a <b>evaluator</b>, the keys are never boxed. <br>
+	 * Use <b>allowDupes</b> if you want values that evaluate to the same key to be added to the map. This will override the previous entry.<br>
+	 * Use <b>skipNullObjects</b> to avoid {@link java.lang.NullPointerException} if a null value is in the collection<br>
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param skipNullObjects if we want to skip null objects, if we don't skip these objects, we will get a {@link java.lang.NullPointerException}
+	 * @return a map created from the items using the generator
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws NullPointerException if there is a null value in the collection and we don't skip it
+	 */
+	public static <Obj> IntObjectMap<Obj> generateIntMap(Collection<? extends Obj> items, IIntEvaluator<Obj> generator, boolean allowDupes,
+			boolean skipNullObjects) throws DuplicateKeyException {
+		if (items == null) {
+			return new IntObjectMap<Obj>();
+		}
+		IntObjectMap<Obj> map = new IntObjectMap<Obj>(items.size());
+		for (Obj t : items) {
+			if (t == null) {
+				if (skipNullObjects) {
+					continue;
+				}
+				throw new NullPointerException("Null Value in Collection");
+			}
+			int key = generator.evaluate(t);
+			if (!allowDupes && map.containsKey(key)) {
+				throw new DuplicateKeyException(key);
+			}
+			map.put(key, t);
+		}
+		return map;
+	}
+
+	/**
+	 * Used to generate a map with primitive long keys from the collection if <b>items</b> by using a <b>evaluator</b>, the keys are never boxed. <br>
+	 * If there are two objects with the same key, the latest entry will override the previous entry<br>
+	 * If there are <b>null</b> values in the collection they are skipped<br>
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @return a map created from the items using the generator
+	 */
+	public static <Obj> LongObjectMap<Obj> generateLongMap(Collection<? extends Obj> items, ILongEvaluator<Obj> generator) {
+		try {
+			return generateLongMap(items, generator, true, true);
+		} catch (DuplicateKeyException e) {
+			return null; // not going to happen
+		}
+	}
+
+	/**
+	 * Used to generate a map with primitive long keys from the collection if <b>items</b> by using a <b>evaluator</b>, the keys are never boxed. <br>
+	 * Use <b>allowDupes</b> if you want values that evaluate to the same key to be added to the map. This will override the previous entry.<br>
+	 * Use <b>skipNullObjects</b> to avoid {@link java.lang.NullPointerException} if a null value is in the collection<br>
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param skipNullObjects if we want to skip null objects, if we don't skip these objects, we will get a {@link java.lang.NullPointerException}
+	 * @return a map created from the items using the generator
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws NullPointerException if there is a null value in the collection and we don't skip it
+	 */
+	public static <Obj> LongObjectMap<Obj> generateLongMap(Collection<? extends Obj> items, ILongEvaluator<Obj> generator, boolean allowDupes,
+			boolean skipNullObjects) throws DuplicateKeyException {
+		if (items == null) {
+			return new LongObjectMap<Obj>();
+		}
+		LongObjectMap<Obj> map = new LongObjectMap<Obj>(items.size());
+		for (Obj t : items) {
+			if (t == null) {
+				if (skipNullObjects) {
+					continue;
+				}
+				throw new NullPointerException("Null Value in Collection");
+			}
+			long key = generator.evaluate(t);
+			if (!allowDupes && map.containsKey(key)) {
+				throw new DuplicateKeyException(key);
+			}
+			map.put(key, t);
+		}
+		return map;
+	}
+
+	/**
+	 * Used to generate a read only map stored outside the java heap from the collection if <b>items</b> by using a <b>evaluator</b>. <br>
+	 * If <b>file</b> is provided the map is memory mapped over it and can be reopened with {@link OffHeapMap#open(File, ISerializer, ISerializer)}<br>
+	 * If there are <b>null</b> values in the collection and objects that evaluate to <b>null</b> they are skipped<br>
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param keySerializer
+	 * @param valueSerializer
+	 * @param file where the map is stored, if <b>null</b> the map is kept in direct buffers
+	 * @return a read only map created from the items using the generator
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws IOException if the file cannot be written
+	 */
+	public static <Key, Obj> Map<Key, Obj> generateOffHeapMap(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator,
+			boolean allowDupes, ISerializer<Key> keySerializer, ISerializer<Obj> valueSerializer, File file) throws DuplicateKeyException,
+			IOException {
+		return OffHeapMap.build(items, generator, allowDupes, keySerializer, valueSerializer, file);
+	}
+
+	/**
+	 * Parallel version of {@link #generateMap(Collection, IEvaluator, boolean, boolean, boolean)}, runs on the common {@link ForkJoinPool}.<br>
+	 * Collections smaller than {@link #PARALLEL_THRESHOLD} are processed serially.<br>
+	 * The <b>generator</b> must be thread safe.
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param skipNullObjects if we want to skip null objects, if we don't skip these objects, we will get a {@link java.lang.NullPointerException}
+	 * @param skipNullValues if we want to skip the null values from being added to the map
+	 * @return a map created from the items using the generator, the same as the serial version would have created
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws NullPointerException if there is a null value in the collection and we don't skip it
+	 */
+	public static <Key, Obj> Map<Key, Obj> generateMapParallel(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator,
+			boolean allowDupes, boolean skipNullObjects, boolean skipNullValues) throws DuplicateKeyException {
+		return generateMapParallel(items, generator, allowDupes, skipNullObjects, skipNullValues, ForkJoinPool.commonPool(), PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Parallel version of {@link #generateMap(Collection, IEvaluator, boolean, boolean, boolean)}.<br>
+	 * The items are split into slices that are evaluated into partial maps on the <b>pool</b>, the partial maps are merged in the original order
+	 * so later items override earlier ones and the exception thrown, if any, is the one the serial version would have thrown.<br>
+	 * The <b>generator</b> must be thread safe.
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param skipNullObjects if we want to skip null objects, if we don't skip these objects, we will get a {@link java.lang.NullPointerException}
+	 * @param skipNullValues if we want to skip the null values from being added to the map
+	 * @param pool where the evaluation runs
+	 * @param threshold collections smaller than this are processed serially
+	 * @return a map created from the items using the generator, the same as the serial version would have created
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws NullPointerException if there is a null value in the collection and we don't skip it
+	 */
+	public static <Key, Obj> Map<Key, Obj> generateMapParallel(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator,
+			boolean allowDupes, boolean skipNullObjects, boolean skipNullValues, ForkJoinPool pool, int threshold) throws DuplicateKeyException {
+		if (items == null || items.size() < threshold || pool.getParallelism() < 2) {
+			return generateMap(items, generator, allowDupes, skipNullObjects, skipNullValues);
+		}
+		return ParallelMapGenerator.generate(pool, items.toArray(), generator, allowDupes, skipNullObjects, skipNullValues);
+	}
+
+	/**
+	 * Used to generate a map from the collection of <b>items</b> by evaluating their keys concurrently on the <b>executor</b>, for slow generators,
+	 * like the ones doing I/O.<br>
+	 * At most <b>maxConcurrency</b> keys are evaluated at a time, the calling thread waits for a free slot before submitting the next one.<br>
+	 * The map keeps the order of the items, if two items evaluate to the same key, the latest one will override the previous value.
+	 * <b>null</b> items and items that evaluate to <b>null</b> are skipped.<br>
+	 * The <b>generator</b> must be thread safe.
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param executor where the keys are evaluated, on Java 21 and later this can be an executor that runs every task on a new virtual thread
+	 * @param maxConcurrency how many keys can be evaluated at a time
+	 * @param policy what to do when a key cannot be evaluated
+	 * @return a map created from the items using the generator, in the order of the items
+	 * @throws MassEvaluationException if a key could not be evaluated, with all the failures if the policy is {@link FailurePolicy#COLLECT_ALL}
+	 * @throws InterruptedException
+	 */
+	public static <Key, Obj> Map<Key, Obj> generateMap(Collection<? extends Obj> items, IEvaluatorWithException<Obj, Key> generator,
+			Executor executor, int maxConcurrency, FailurePolicy policy) throws MassEvaluationException, InterruptedException {
+		ConcurrentEvaluator<Obj, Key> evaluation = ConcurrentEvaluator.evaluate(items, generator, executor, maxConcurrency, policy);
+		Map<Key, Obj> map = new LinkedHashMap<Key, Obj>(InternalEvaluator.hashCapacity(evaluation.size()));
+		for (int i = 0; i < evaluation.size(); i++) {
+			Key key = evaluation.result(i);
+			if (key != null) {
+				map.remove(key); // the latest item also takes the position
+				map.put(key, evaluation.object(i));
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Groups the collection of <b>items</b> by the key their <b>generator</b> evaluates to.<br>
+	 * The values of every key keep the order of the collection, <b>null</b> objects and objects that evaluate to <b>null</b> are skipped.
+	 * @param items the collection we group
+	 * @param generator the key generator
+	 * @return the groups
+	 */
+	public static <Key, Obj> GroupedMap<Key, Obj> groupBy(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator) {
+		if (items == null) {
+			return new GroupedMap<Key, Obj>(0);
+		}
+		return groupBy(items.iterator(), generator);
+	}
+
+	/**
+	 * Streaming version of {@link #groupBy(Collection, IEvaluator)}, the items are consumed one by one from the <b>iterator</b>
+	 * @param items the items we group
+	 * @param generator the key generator
+	 * @return the groups
+	 */
+	public static <Key, Obj> GroupedMap<Key, Obj> groupBy(Iterator<? extends Obj> items, IEvaluator<Obj, Key> generator) {
+		GroupedMap<Key, Obj> map = new GroupedMap<Key, Obj>(16);
+		while (items.hasNext()) {
+			Obj t = items.next();
+			if (t != null) {
+				Key key = generator.evaluate(t);
+				if (key != null) {
+					map.add(key, t);
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Parallel version of {@link #groupBy(Collection, IEvaluator)}, runs on the common {@link ForkJoinPool}.<br>
+	 * Collections smaller than {@link #PARALLEL_THRESHOLD} are processed serially, the <b>generator</b> must be thread safe.
+	 * @param items the collection we group
+	 * @param generator the key generator
+	 * @return the groups, the same as the serial version would have created
+	 */
+	public static <Key, Obj> GroupedMap<Key, Obj> groupByParallel(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator) {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		if (items == null || items.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+			return groupBy(items, generator);
+		}
+		Object[] array = items.toArray();
+		int sliceSize = Math.max(1024, array.length / (pool.getParallelism() * 4));
+		return pool.invoke(new ParallelGrouper<Key, Obj>(array, 0, array.length, sliceSize, generator));
+	}
+
+	/**
+	 * Counts how many <b>items</b> evaluate to every key, the values are not kept.<br>
+	 * <b>null</b> objects and objects that evaluate to <b>null</b> are skipped.
+	 * @param items the collection we count
+	 * @param generator the key generator
+	 * @return the counts
+	 */
+	public static <Key, Obj> CountMap<Key> countBy(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator) {
+		if (items == null) {
+			return new CountMap<Key>(0);
+		}
+		return countBy(items.iterator(), generator);
+	}
+
+	/**
+	 * Streaming version of {@link #countBy(Collection, IEvaluator)}
+	 * @param items the items we count
+	 * @param generator the key generator
+	 * @return the counts
+	 */
+	public static <Key, Obj> CountMap<Key> countBy(Iterator<? extends Obj> items, IEvaluator<Obj, Key> generator) {
+		CountMap<Key> map = new CountMap<Key>(16);
+		while (items.hasNext()) {
+			Obj t = items.next();
+			if (t != null) {
+				Key key = generator.evaluate(t);
+				if (key != null) {
+					map.increment(key);
+				}
+			}
+		}
+		return map;
+	}
+
 	/**
 	 * @param initializer the map initializer
 	 * @return a unmodifiable {@link java.util.HashMap} containting the values that were set using the <b>initializer</b>
@@ -133,7 +471,7 @@ public class MapUtil {
 //		java 6 doesn't reify generics
 //		if it did reify generics we would have had O extends X instead of X extends O
 //		which would have been a much safer choice, oh well...
-		V call = (V) initializer.evaluate(initValue);
+		V call = (V) InitializerMetrics.evaluate(AIMap.INITIALIZER_METRIC, initializer, initValue);
 		map.put(key, call);
 		return call;
 	}
@@ -167,6 +505,13 @@ public class MapUtil {
 	 */
 	private static class InternalHashMap<K, V> extends HashMap<K, V> implements IDupeChecker<K> {
 
+		/**
+		 * @param expectedSize
+		 */
+		InternalHashMap(int expectedSize) {
+			super(InternalEvaluator.hashCapacity(expectedSize));
+		}
+
 		/* (non-Javadoc)
 		 * @see de.xwic.appkit.core.util.InternalEvaluator.DupeChecker#checkDupe(java.lang.Object)
 		 */
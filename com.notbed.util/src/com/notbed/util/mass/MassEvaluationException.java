@@ -0,0 +1,49 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Thrown by the concurrent mass evaluations, the cause is the failure of the first object in input order,
+ * the other failures are suppressed and all of them are available by input position with {@link #getFailures()}.
+ * @author Alexandru Bledea
+ * @since Dec 23, 2013
+ */
+public class MassEvaluationException extends ExecutionException {
+
+	private final SortedMap<Integer, Throwable> failures;
+	private final int evaluations;
+
+	/**
+	 * @param failures by position in the input, not empty
+	 * @param evaluations how many objects were evaluated or should have been
+	 */
+	MassEvaluationException(SortedMap<Integer, Throwable> failures, int evaluations) {
+		super(failures.size() + " of " + evaluations + " evaluations failed", failures.get(failures.firstKey()));
+		this.failures = Collections.unmodifiableSortedMap(failures);
+		this.evaluations = evaluations;
+		for (Throwable failure : failures.values()) {
+			if (failure != getCause()) {
+				addSuppressed(failure);
+			}
+		}
+	}
+
+	/**
+	 * @return the failures by position of the object in the input
+	 */
+	public SortedMap<Integer, Throwable> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return how many objects were to be evaluated, the failed ones and the ones skipped by {@link FailurePolicy#FAIL_FAST} included
+	 */
+	public int getEvaluationCount() {
+		return evaluations;
+	}
+}
@@ -0,0 +1,365 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only map stored outside the java heap, in direct buffers or in a memory mapped file, so huge indexes don't weigh on the GC.<br>
+ * Keys and values are stored as bytes by the {@link ISerializer}s and deserialized on every read.<br>
+ * A map built over a file can be reopened with {@link #open(File, ISerializer, ISerializer)} without being rebuilt.<br>
+ * File layout: a header (magic, version, size, slots, end of data), an open addressing table of record offsets
+ * and the records (key hash, key length, value length, key bytes, value bytes).
+ * @author Alexandru Bledea
+ * @since Nov 27, 2013
+ */
+public final class OffHeapMap<K, V> extends AbstractMap<K, V> {
+
+	private static final int MAGIC = 0x4E424958;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int RECORD_HEADER_SIZE = 12;
+	private static final int EXPECTED_RECORD_SIZE = 64;
+
+	private final ChunkedBuffer buffer;
+	private final ISerializer<K> keySerializer;
+	private final ISerializer<V> valueSerializer;
+	private final int size;
+	private final long slots;
+
+	/**
+	 * @param buffer
+	 * @param keySerializer
+	 * @param valueSerializer
+	 */
+	private OffHeapMap(ChunkedBuffer buffer, ISerializer<K> keySerializer, ISerializer<V> valueSerializer) {
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not an off heap index or unsupported version");
+		}
+		this.buffer = buffer;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.size = (int) buffer.getLong(8);
+		this.slots = buffer.getLong(16);
+		buffer.ensureCapacity(buffer.getLong(24));
+	}
+
+	/**
+	 * Builds an off heap map from the collection of <b>items</b> by using a <b>generator</b>. <br>
+	 * <b>null</b> objects and objects that evaluate to <b>null</b> are skipped.
+	 * @param items the collection from which we create the map
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value, if we don't support it, throw {@link DuplicateKeyException}
+	 * @param keySerializer
+	 * @param valueSerializer
+	 * @param file where the map is stored, if <b>null</b> the map is kept in direct buffers
+	 * @return the read only map
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 * @throws IOException if the file cannot be written
+	 */
+	public static <Key, Obj> OffHeapMap<Key, Obj> build(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator, boolean allowDupes,
+			ISerializer<Key> keySerializer, ISerializer<Obj> valueSerializer, File file) throws DuplicateKeyException, IOException {
+		long expectedSize = expectedSize(items == null ? 0 : items.size());
+		if (file == null) {
+			return build(items, generator, allowDupes, keySerializer, valueSerializer, ChunkedBuffer.direct(expectedSize));
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			ChunkedBuffer buffer = ChunkedBuffer.mapped(raf.getChannel(), expectedSize);
+			OffHeapMap<Key, Obj> map = build(items, generator, allowDupes, keySerializer, valueSerializer, buffer);
+			buffer.force();
+			try {
+				raf.setLength(buffer.getLong(24)); // drop the unused end of the last chunk
+			} catch (IOException e) {
+				// some platforms don't truncate mapped files, the padding is ignored by open
+			}
+			return map; // the mapping stays valid after the channel is closed
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reopens a map that was built over a file
+	 * @param file
+	 * @param keySerializer must be the same as the one used to build the map
+	 * @param valueSerializer must be the same as the one used to build the map
+	 * @return
+	 * @throws IOException
+	 */
+	public static <Key, Obj> OffHeapMap<Key, Obj> open(File file, ISerializer<Key> keySerializer, ISerializer<Obj> valueSerializer)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < HEADER_SIZE) {
+				throw new IOException("Not an off heap index: " + file);
+			}
+			raf.seek(24);
+			long end = raf.readLong();
+			if (end < HEADER_SIZE || end > raf.length()) {
+				throw new IOException("Not an off heap index or truncated: " + file);
+			}
+			FileChannel channel = raf.getChannel();
+			return new OffHeapMap<Key, Obj>(ChunkedBuffer.mappedReadOnly(channel), keySerializer, valueSerializer);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param expected how many items we expect
+	 * @return
+	 */
+	private static long slots(int expected) {
+		return Long.highestOneBit(Math.max(16L, expected * 2L) - 1) << 1;
+	}
+
+	/**
+	 * the records are assumed to be about {@link #EXPECTED_RECORD_SIZE} bytes, bigger ones only add chunks
+	 * @param expected how many items we expect
+	 * @return the bytes used to size the chunks
+	 */
+	private static long expectedSize(int expected) {
+		return HEADER_SIZE + slots(expected) * 8 + expected * (long) EXPECTED_RECORD_SIZE;
+	}
+
+	/**
+	 * @param items
+	 * @param generator
+	 * @param allowDupes
+	 * @param keySerializer
+	 * @param valueSerializer
+	 * @param buffer
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	private static <Key, Obj> OffHeapMap<Key, Obj> build(Collection<? extends Obj> items, IEvaluator<Obj, Key> generator, boolean allowDupes,
+			ISerializer<Key> keySerializer, ISerializer<Obj> valueSerializer, ChunkedBuffer buffer) throws DuplicateKeyException {
+		int expected = items == null ? 0 : items.size();
+		long slots = slots(expected);
+		long mask = slots - 1;
+		long end = HEADER_SIZE + slots * 8;
+		buffer.ensureCapacity(end); // new chunks are zero filled, so the table starts empty
+		long size = 0;
+		if (items != null) {
+			for (Obj t : items) {
+				if (t == null) {
+					continue;
+				}
+				Key key = generator.evaluate(t);
+				if (key == null) {
+					continue;
+				}
+				byte[] keyBytes = keySerializer.serialize(key);
+				byte[] valueBytes = valueSerializer.serialize(t);
+				int hash = hash(keyBytes);
+				long slot = hash & mask;
+				long offset;
+				while ((offset = buffer.getLong(tablePosition(slot))) != 0) {
+					if (buffer.getInt(offset) == hash && buffer.getInt(offset + 4) == keyBytes.length
+							&& buffer.matches(offset + RECORD_HEADER_SIZE, keyBytes)) {
+						if (!allowDupes) {
+							throw new DuplicateKeyException(key);
+						}
+						size--; // the old record stays in the data, unreachable
+						break;
+					}
+					slot = (slot + 1) & mask;
+				}
+				buffer.putInt(end, hash);
+				buffer.putInt(end + 4, keyBytes.length);
+				buffer.putInt(end + 8, valueBytes.length);
+				buffer.put(end + RECORD_HEADER_SIZE, keyBytes);
+				buffer.put(end + RECORD_HEADER_SIZE + keyBytes.length, valueBytes);
+				buffer.putLong(tablePosition(slot), end);
+				end += RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+				size++;
+			}
+		}
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putLong(8, size);
+		buffer.putLong(16, slots);
+		buffer.putLong(24, end);
+		return new OffHeapMap<Key, Obj>(buffer, keySerializer, valueSerializer);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public V get(Object key) {
+		long offset = find(key);
+		return offset == 0 ? null : readValue(offset);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) != 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+
+			/* (non-Javadoc)
+			 * @see java.util.AbstractCollection#iterator()
+			 */
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			/* (non-Javadoc)
+			 * @see java.util.AbstractCollection#size()
+			 */
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * @return the offset of the record or 0 if the key is not in the map
+	 */
+	private long find(Object key) {
+		if (key == null) {
+			return 0;
+		}
+		byte[] keyBytes;
+		try {
+			keyBytes = keySerializer.serialize((K) key);
+		} catch (ClassCastException e) {
+			return 0;
+		}
+		int hash = hash(keyBytes);
+		long mask = slots - 1;
+		long slot = hash & mask;
+		long offset;
+		while ((offset = buffer.getLong(tablePosition(slot))) != 0) {
+			if (buffer.getInt(offset) == hash && buffer.getInt(offset + 4) == keyBytes.length
+					&& buffer.matches(offset + RECORD_HEADER_SIZE, keyBytes)) {
+				return offset;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * @param offset
+	 * @return
+	 */
+	private K readKey(long offset) {
+		return keySerializer.deserialize(buffer.slice(offset + RECORD_HEADER_SIZE, buffer.getInt(offset + 4)));
+	}
+
+	/**
+	 * @param offset
+	 * @return
+	 */
+	private V readValue(long offset) {
+		int keyLength = buffer.getInt(offset + 4);
+		return valueSerializer.deserialize(buffer.slice(offset + RECORD_HEADER_SIZE + keyLength, buffer.getInt(offset + 8)));
+	}
+
+	/**
+	 * @param slot
+	 * @return
+	 */
+	private static long tablePosition(long slot) {
+		return HEADER_SIZE + slot * 8;
+	}
+
+	/**
+	 * stable between runs, unlike {@link Object#hashCode()} for some keys
+	 * @param bytes
+	 * @return
+	 */
+	private static int hash(byte[] bytes) {
+		int h = 0x811C9DC5;
+		for (byte b : bytes) {
+			h = (h ^ b) * 0x01000193;
+		}
+		return (h ^ (h >>> 16)) & 0x7FFFFFFF;
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 27, 2013
+	 */
+	private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+		private long slot = -1;
+		private long next = advance();
+
+		/**
+		 * @return the offset of the next record, 0 if none
+		 */
+		private long advance() {
+			while (++slot < slots) {
+				long offset = buffer.getLong(tablePosition(slot));
+				if (offset != 0) {
+					return offset;
+				}
+			}
+			return 0;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			return next != 0;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public Entry<K, V> next() {
+			if (next == 0) {
+				throw new NoSuchElementException();
+			}
+			long offset = next;
+			next = advance();
+			return new SimpleImmutableEntry<K, V>(readKey(offset), readValue(offset));
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#remove()
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Read only map");
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+/**
+ * The table arithmetic shared by {@link IntObjectMap} and {@link LongObjectMap}.<br>
+ * The probe loops stay in the maps, over their own key arrays, so the keys are never boxed.
+ * The two maps are the same code with a different key type, a change to one of them must be made to the other.
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+final class OpenAddressing {
+
+	static final int MAX_CAPACITY = 1 << 30;
+
+	/**
+	 *
+	 */
+	private OpenAddressing() {
+	}
+
+	/**
+	 * @param hash
+	 * @param mask
+	 * @return the home slot of the hash
+	 */
+	static int slot(int hash, int mask) {
+		int h = hash * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * backward shift deletion, the key in slot <b>i</b> can move to the <b>gap</b> if that doesn't put it before its home slot
+	 * @param i
+	 * @param home
+	 * @param gap
+	 * @param mask
+	 * @return
+	 */
+	static boolean canShift(int i, int home, int gap, int mask) {
+		return ((i - home) & mask) >= ((i - gap) & mask);
+	}
+
+	/**
+	 * @param capacity
+	 * @return the size at which the table must grow, 0.75 load factor
+	 */
+	static int resizeAt(int capacity) {
+		return capacity / 4 * 3;
+	}
+
+	/**
+	 * @param size the keys in the table, without the free key
+	 * @param resizeAt
+	 * @throws IllegalStateException if the table is at {@link #MAX_CAPACITY} and another key would degrade the probing to a full scan
+	 */
+	static void checkRoom(int size, int resizeAt) {
+		if (size >= resizeAt) {
+			throw new IllegalStateException("Map is full");
+		}
+	}
+
+	/**
+	 * @param capacity
+	 * @return true if the table can double
+	 */
+	static boolean canGrow(int capacity) {
+		return capacity < MAX_CAPACITY;
+	}
+
+	/**
+	 * @param expectedSize
+	 * @return a power of two big enough to hold <b>expectedSize</b> keys under the 0.75 load factor
+	 */
+	static int tableSize(int expectedSize) {
+		long needed = Math.max(4L, (long) Math.ceil(expectedSize / 0.75) + 1);
+		if (needed >= MAX_CAPACITY) {
+			return MAX_CAPACITY;
+		}
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+}
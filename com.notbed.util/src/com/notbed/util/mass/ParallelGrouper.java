@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join implementation of {@link MapUtil#groupByParallel(java.util.Collection, IEvaluator)},
+ * the slices are grouped separately and merged left to right so the values keep the original order.
+ * @author Alexandru Bledea
+ * @since Dec 1, 2013
+ */
+final class ParallelGrouper<Key, Obj> extends RecursiveTask<GroupedMap<Key, Obj>> {
+
+	private final Object[] items;
+	private final int from;
+	private final int to;
+	private final int sliceSize;
+	private final IEvaluator<Obj, Key> generator;
+
+	/**
+	 * @param items
+	 * @param from
+	 * @param to
+	 * @param sliceSize
+	 * @param generator
+	 */
+	ParallelGrouper(Object[] items, int from, int to, int sliceSize, IEvaluator<Obj, Key> generator) {
+		this.items = items;
+		this.from = from;
+		this.to = to;
+		this.sliceSize = sliceSize;
+		this.generator = generator;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.RecursiveTask#compute()
+	 */
+	@Override
+	protected GroupedMap<Key, Obj> compute() {
+		if (to - from <= sliceSize) {
+			GroupedMap<Key, Obj> map = new GroupedMap<Key, Obj>(16);
+			for (int i = from; i < to; i++) {
+				Obj t = (Obj) items[i];
+				if (t != null) {
+					Key key = generator.evaluate(t);
+					if (key != null) {
+						map.add(key, t);
+					}
+				}
+			}
+			return map;
+		}
+		int middle = (from + to) >>> 1;
+		ParallelGrouper<Key, Obj> right = new ParallelGrouper<Key, Obj>(items, middle, to, sliceSize, generator);
+		right.fork();
+		GroupedMap<Key, Obj> left = new ParallelGrouper<Key, Obj>(items, from, middle, sliceSize, generator).compute();
+		left.addAll(right.join());
+		return left;
+	}
+}
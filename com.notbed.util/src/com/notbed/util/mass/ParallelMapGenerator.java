@@ -0,0 +1,202 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.notbed.util.ITimer;
+import com.notbed.util.Metrics;
+import com.notbed.util.mass.InternalEvaluator.EvaluationResult;
+import com.notbed.util.mass.InternalEvaluator.IDupeChecker;
+
+/**
+ * Fork/join implementation of {@link MapUtil#generateMap(java.util.Collection, IEvaluator, boolean, boolean, boolean)}.<br>
+ * The items are split in slices, every slice is evaluated into its own map and the maps are merged pairwise, left to right.<br>
+ * The result is the same as the serial one: later items override earlier ones and
+ * if something fails the exception is the one the serial version would have thrown first.
+ * @author Alexandru Bledea
+ * @since Nov 19, 2013
+ */
+final class ParallelMapGenerator<Key, Obj> extends RecursiveTask<ParallelMapGenerator.Partial<Key, Obj>> {
+
+	private final Object[] items;
+	private final int from;
+	private final int to;
+	private final int sliceSize;
+	private final IEvaluator<Obj, Key> generator;
+	private final boolean allowDupes;
+	private final boolean skipNullObjects;
+	private final boolean skipNullValues;
+
+	/**
+	 * @param items
+	 * @param from
+	 * @param to
+	 * @param sliceSize
+	 * @param generator
+	 * @param allowDupes
+	 * @param skipNullObjects
+	 * @param skipNullValues
+	 */
+	private ParallelMapGenerator(Object[] items, int from, int to, int sliceSize, IEvaluator<Obj, Key> generator, boolean allowDupes,
+			boolean skipNullObjects, boolean skipNullValues) {
+		this.items = items;
+		this.from = from;
+		this.to = to;
+		this.sliceSize = sliceSize;
+		this.generator = generator;
+		this.allowDupes = allowDupes;
+		this.skipNullObjects = skipNullObjects;
+		this.skipNullValues = skipNullValues;
+	}
+
+	/**
+	 * @param pool
+	 * @param items
+	 * @param generator
+	 * @param allowDupes
+	 * @param skipNullObjects
+	 * @param skipNullValues
+	 * @return
+	 * @throws DuplicateKeyException
+	 */
+	static <Key, Obj> Map<Key, Obj> generate(ForkJoinPool pool, Object[] items, IEvaluator<Obj, Key> generator, boolean allowDupes,
+			boolean skipNullObjects, boolean skipNullValues) throws DuplicateKeyException {
+		int sliceSize = Math.max(1024, items.length / (pool.getParallelism() * 4));
+		Partial<Key, Obj> partial = pool.invoke(new ParallelMapGenerator<Key, Obj>(items, 0, items.length, sliceSize, generator, allowDupes,
+				skipNullObjects, skipNullValues));
+		Throwable failure = partial.failure;
+		if (failure == null) {
+			return partial.map;
+		}
+		if (failure instanceof DuplicateKeyException) {
+			throw (DuplicateKeyException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		throw new UndeclaredThrowableException(failure, "Checked exception thrown by the generator"); // sneaky throws
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.RecursiveTask#compute()
+	 */
+	@Override
+	protected Partial<Key, Obj> compute() {
+		if (to - from <= sliceSize) {
+			return evaluateSlice();
+		}
+		int middle = (from + to) >>> 1;
+		ParallelMapGenerator<Key, Obj> right = new ParallelMapGenerator<Key, Obj>(items, middle, to, sliceSize, generator, allowDupes,
+				skipNullObjects, skipNullValues);
+		right.fork();
+		Partial<Key, Obj> left = new ParallelMapGenerator<Key, Obj>(items, from, middle, sliceSize, generator, allowDupes,
+				skipNullObjects, skipNullValues).compute();
+		return merge(left, right.join());
+	}
+
+	/**
+	 * @return
+	 */
+	private Partial<Key, Obj> evaluateSlice() {
+		SliceMap<Key, Obj> map = new SliceMap<Key, Obj>(to - from);
+		EvaluationResult<Key> result = new EvaluationResult<Key>();
+		ITimer timer = Metrics.timer(MapUtil.GENERATE_MAP_TIMER);
+		try {
+			for (int i = from; i < to; i++) {
+				Obj t = (Obj) items[i];
+				result = InternalEvaluator.evaluate(t, skipNullObjects, generator, skipNullValues, allowDupes, map, result, timer);
+				if (!result.skip()) {
+					map.put(result.getResult(), t);
+				}
+			}
+		} catch (Throwable t) {
+			return new Partial<Key, Obj>(map, t);
+		}
+		return new Partial<Key, Obj>(map, null);
+	}
+
+	/**
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private Partial<Key, Obj> merge(Partial<Key, Obj> left, Partial<Key, Obj> right) {
+		if (left.failure != null) {
+			return left; // everything on the right comes later
+		}
+		Map<Key, Obj> merged;
+		if (!allowDupes) {
+			merged = left.map; // keeps the order, the first common key is the one the serial version would have reported
+			for (Entry<Key, Obj> entry : right.map.entrySet()) {
+				Key key = entry.getKey();
+				if (merged.containsKey(key)) {
+					return new Partial<Key, Obj>(merged, new DuplicateKeyException(key));
+				}
+				merged.put(key, entry.getValue());
+			}
+		} else if (left.map.size() >= right.map.size()) {
+			merged = left.map;
+			merged.putAll(right.map);
+		} else {
+			merged = right.map;
+			for (Entry<Key, Obj> entry : left.map.entrySet()) {
+				if (!merged.containsKey(entry.getKey())) {
+					merged.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return new Partial<Key, Obj>(merged, right.failure);
+	}
+
+	/**
+	 * @author Alexandru Bledea
+	 * @since Nov 19, 2013
+	 */
+	static final class Partial<Key, Obj> {
+
+		private final Map<Key, Obj> map;
+		private final Throwable failure;
+
+		/**
+		 * @param map
+		 * @param failure
+		 */
+		Partial(Map<Key, Obj> map, Throwable failure) {
+			this.map = map;
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * keeps the insertion order, needed to find the first duplicate
+	 * @author Alexandru Bledea
+	 * @since Nov 19, 2013
+	 */
+	private static final class SliceMap<K, V> extends LinkedHashMap<K, V> implements IDupeChecker<K> {
+
+		/**
+		 * @param expectedSize
+		 */
+		SliceMap(int expectedSize) {
+			super(InternalEvaluator.hashCapacity(expectedSize));
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.InternalEvaluator.IDupeChecker#checkIfDupe(java.lang.Object)
+		 */
+		@Override
+		public boolean checkIfDupe(K what) {
+			return containsKey(what);
+		}
+	}
+}
@@ -0,0 +1,362 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.notbed.util.ITimer;
+import com.notbed.util.Metrics;
+import com.notbed.util.mass.InternalEvaluator.EvaluationResult;
+import com.notbed.util.mass.InternalEvaluator.HashIndexDupeChecker;
+
+/**
+ * Lazy, pull based pipeline over an {@link Iterator}, the streaming counterpart of
+ * {@link CollectionUtil#createCollection(Collection, IEvaluator, Collection, boolean, boolean, boolean)} and
+ * {@link MapUtil#generateMap(Collection, IEvaluator, boolean, boolean, boolean)}.<br>
+ * Nothing is evaluated until a terminal operation ({@link #into(Collection)}, {@link #drainTo(IEvaluator)}, {@link #toMap(IEvaluator, boolean, boolean, boolean)}, {@link #count()})
+ * or the {@link #iterator()} pulls the elements, one at a time, so memory stays constant apart from the dedupe sets.<br>
+ * A pipeline can be consumed only once.<br><br>
+ * for instance<br>
+ * Pipeline.from(resultSetIterator).skipNulls().map(toId).dedupe().into(ids);
+ * @author Alexandru Bledea
+ * @since Dec 4, 2013
+ * @param <T>
+ */
+public final class Pipeline<T> implements Iterable<T> {
+
+	private final Iterator<? extends T> source;
+
+	/**
+	 * @param source
+	 */
+	private Pipeline(Iterator<? extends T> source) {
+		this.source = source;
+	}
+
+	/**
+	 * @param iterable
+	 * @return
+	 */
+	public static <T> Pipeline<T> from(Iterable<? extends T> iterable) {
+		if (iterable == null) {
+			return new Pipeline<T>(Collections.<T> emptyList().iterator());
+		}
+		return new Pipeline<T>(iterable.iterator());
+	}
+
+	/**
+	 * @param iterator
+	 * @return
+	 */
+	public static <T> Pipeline<T> from(Iterator<? extends T> iterator) {
+		if (iterator == null) {
+			return new Pipeline<T>(Collections.<T> emptyList().iterator());
+		}
+		return new Pipeline<T>(iterator);
+	}
+
+	/**
+	 * @param evaluator
+	 * @return a pipeline with the evaluated values, nulls included
+	 */
+	public <R> Pipeline<R> map(final IEvaluator<? super T, R> evaluator) {
+		return new Pipeline<R>(new Stage<R>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.Pipeline.Stage#advance()
+			 */
+			@Override
+			protected boolean advance() {
+				if (!source.hasNext()) {
+					return false;
+				}
+				next = evaluator.evaluate(source.next());
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * @param filter
+	 * @return a pipeline with the elements for which the filter evaluates to true
+	 */
+	public Pipeline<T> filter(final IEvaluator<? super T, Boolean> filter) {
+		return new Pipeline<T>(new Stage<T>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.Pipeline.Stage#advance()
+			 */
+			@Override
+			protected boolean advance() {
+				while (source.hasNext()) {
+					T t = source.next();
+					if (Boolean.TRUE.equals(filter.evaluate(t))) {
+						next = t;
+						return true;
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * @return a pipeline without the null elements
+	 */
+	public Pipeline<T> skipNulls() {
+		return new Pipeline<T>(new Stage<T>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.Pipeline.Stage#advance()
+			 */
+			@Override
+			protected boolean advance() {
+				while (source.hasNext()) {
+					T t = source.next();
+					if (t != null) {
+						next = t;
+						return true;
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * @return a pipeline where only the first occurrence of every element is kept
+	 */
+	public Pipeline<T> dedupe() {
+		final Set<T> seen = new HashSet<T>();
+		return new Pipeline<T>(new Stage<T>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.Pipeline.Stage#advance()
+			 */
+			@Override
+			protected boolean advance() {
+				while (source.hasNext()) {
+					T t = source.next();
+					if (seen.add(t)) {
+						next = t;
+						return true;
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Evaluates the elements with the same rules as {@link CollectionUtil#createCollection(Collection, IEvaluator, Collection, boolean, boolean, boolean)}<br>
+	 * A duplicate value is reported by the terminal operation as {@link DuplicateKeyException}.
+	 * @param evaluator the evaluator
+	 * @param allowDupes if we allow dupes in the result
+	 * @param skipNullObjects if we skip null objects, if we don't we will get a {@link java.lang.NullPointerException}
+	 * @param skipNullValues if we want to skip the null values
+	 * @return
+	 */
+	public <R> Pipeline<R> evaluate(final IEvaluator<T, R> evaluator, final boolean allowDupes, final boolean skipNullObjects,
+			final boolean skipNullValues) {
+		final HashIndexDupeChecker<R> dupeChecker = allowDupes ? null : new HashIndexDupeChecker<R>(Collections.<R> emptySet(), 16);
+		return new Pipeline<R>(new Stage<R>() {
+
+			private EvaluationResult<R> result = new EvaluationResult<R>();
+			private final ITimer timer = Metrics.timer(CollectionUtil.CREATE_COLLECTION_TIMER);
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.Pipeline.Stage#advance()
+			 */
+			@Override
+			protected boolean advance() {
+				while (source.hasNext()) {
+					try {
+						result = InternalEvaluator.evaluate(source.next(), skipNullObjects, evaluator, skipNullValues, allowDupes, dupeChecker, result, timer);
+					} catch (DuplicateKeyException e) {
+						throw new DuplicateInPipelineException(e);
+					}
+					if (!result.skip()) {
+						next = result.getResult();
+						if (dupeChecker != null) {
+							dupeChecker.add(next);
+						}
+						return true;
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return (Iterator<T>) source;
+	}
+
+	/**
+	 * @param collection
+	 * @return the collection filled with all the elements
+	 * @throws DuplicateKeyException if the pipeline does not allow dupes and one was found
+	 */
+	public <C extends Collection<? super T>> C into(C collection) throws DuplicateKeyException {
+		try {
+			while (source.hasNext()) {
+				collection.add(source.next());
+			}
+		} catch (DuplicateInPipelineException e) {
+			throw e.duplicate;
+		}
+		return collection;
+	}
+
+	/**
+	 * @param sink evaluated for every element, the result is ignored, a {@link VoidEvaluator} works well
+	 * @throws DuplicateKeyException if the pipeline does not allow dupes and one was found
+	 */
+	public void drainTo(IEvaluator<? super T, ?> sink) throws DuplicateKeyException {
+		try {
+			while (source.hasNext()) {
+				sink.evaluate(source.next());
+			}
+		} catch (DuplicateInPipelineException e) {
+			throw e.duplicate;
+		}
+	}
+
+	/**
+	 * Streaming version of {@link MapUtil#generateMap(Collection, IEvaluator, boolean, boolean, boolean)}
+	 * @param generator the key generator
+	 * @param allowDupes if we allow duplicate keys in the map, the latest one will always override the previous value
+	 * @param skipNullObjects if we want to skip null objects, if we don't skip these objects, we will get a {@link java.lang.NullPointerException}
+	 * @param skipNullValues if we want to skip the null values from being added to the map
+	 * @return a map created from the elements using the generator
+	 * @throws DuplicateKeyException if we have a duplicate key and we don't allow that
+	 */
+	public <Key> Map<Key, T> toMap(IEvaluator<T, Key> generator, boolean allowDupes, boolean skipNullObjects, boolean skipNullValues)
+			throws DuplicateKeyException {
+		Map<Key, T> map = new HashMap<Key, T>();
+		try {
+			while (source.hasNext()) {
+				T t = source.next();
+				if (t == null) {
+					if (skipNullObjects) {
+						continue;
+					}
+					throw new NullPointerException("Null Value in Pipeline");
+				}
+				Key key = generator.evaluate(t);
+				if (key == null && skipNullValues) {
+					continue;
+				}
+				if (!allowDupes && map.containsKey(key)) {
+					throw new DuplicateKeyException(key);
+				}
+				map.put(key, t);
+			}
+		} catch (DuplicateInPipelineException e) {
+			throw e.duplicate;
+		}
+		return map;
+	}
+
+	/**
+	 * @return how many elements passed through the pipeline
+	 * @throws DuplicateKeyException if the pipeline does not allow dupes and one was found
+	 */
+	public int count() throws DuplicateKeyException {
+		int count = 0;
+		try {
+			while (source.hasNext()) {
+				source.next();
+				count++;
+			}
+		} catch (DuplicateInPipelineException e) {
+			throw e.duplicate;
+		}
+		return count;
+	}
+
+	/**
+	 * Carries a {@link DuplicateKeyException} through {@link Iterator#next()}, the terminal operations unwrap it
+	 * @author Alexandru Bledea
+	 * @since Dec 4, 2013
+	 */
+	public static final class DuplicateInPipelineException extends IllegalStateException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final DuplicateKeyException duplicate;
+
+		/**
+		 * @param duplicate
+		 */
+		DuplicateInPipelineException(DuplicateKeyException duplicate) {
+			super(duplicate.getMessage(), duplicate);
+			this.duplicate = duplicate;
+		}
+	}
+
+	/**
+	 * Iterator that computes its next element in advance
+	 * @author Alexandru Bledea
+	 * @since Dec 4, 2013
+	 * @param <R>
+	 */
+	private abstract static class Stage<R> implements Iterator<R> {
+
+		protected R next;
+		private boolean ready;
+		private boolean done;
+
+		/**
+		 * sets {@link #next}
+		 * @return false if there are no more elements
+		 */
+		protected abstract boolean advance();
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			if (!ready && !done) {
+				ready = advance();
+				done = !ready;
+			}
+			return ready;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ready = false;
+			R result = next;
+			next = null;
+			return result;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#remove()
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * @author Alexandru Bledea
+ * @since Nov 27, 2013
+ */
+public class Serializers {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static final ISerializer<String> STRING = new ISerializer<String>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#serialize(java.lang.Object)
+		 */
+		@Override
+		public byte[] serialize(String obj) {
+			return obj.getBytes(UTF8);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#deserialize(java.nio.ByteBuffer)
+		 */
+		@Override
+		public String deserialize(ByteBuffer buffer) {
+			return UTF8.decode(buffer).toString();
+		}
+	};
+
+	public static final ISerializer<Integer> INTEGER = new ISerializer<Integer>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#serialize(java.lang.Object)
+		 */
+		@Override
+		public byte[] serialize(Integer obj) {
+			return ByteBuffer.allocate(4).putInt(obj).array();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#deserialize(java.nio.ByteBuffer)
+		 */
+		@Override
+		public Integer deserialize(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+	};
+
+	public static final ISerializer<Long> LONG = new ISerializer<Long>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#serialize(java.lang.Object)
+		 */
+		@Override
+		public byte[] serialize(Long obj) {
+			return ByteBuffer.allocate(8).putLong(obj).array();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.ISerializer#deserialize(java.nio.ByteBuffer)
+		 */
+		@Override
+		public Long deserialize(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+	};
+
+	/**
+	 * uses java serialization, convenient for values, not recommended for keys
+	 * @return
+	 */
+	public static <T extends Serializable> ISerializer<T> serializable() {
+		return new ISerializer<T>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.ISerializer#serialize(java.lang.Object)
+			 */
+			@Override
+			public byte[] serialize(T obj) {
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					ObjectOutputStream out = new ObjectOutputStream(bytes);
+					out.writeObject(obj);
+					out.close();
+					return bytes.toByteArray();
+				} catch (Exception e) {
+					throw new RuntimeException("Failed to serialize " + obj, e);
+				}
+			}
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.ISerializer#deserialize(java.nio.ByteBuffer)
+			 */
+			@Override
+			public T deserialize(ByteBuffer buffer) {
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				try {
+					return (T) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+				} catch (Exception e) {
+					throw new RuntimeException("Failed to deserialize", e);
+				}
+			}
+		};
+	}
+}
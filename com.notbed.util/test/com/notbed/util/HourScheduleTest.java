@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.notbed.util.UTime.HourSpan;
+
+/**
+ * The tabled offsets give the same minute of the day as asking the zone
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class HourScheduleTest {
+
+	/**
+	 * @param zone
+	 * @param epochMillis
+	 */
+	private static void assertSameMinutes(TimeZone zone, long... epochMillis) {
+		HourSchedule schedule = new HourSchedule(zone, new HourSpan("9:00", "17:00", false));
+		for (long millis : epochMillis) {
+			assertEquals(zone.getID() + " at " + millis, UTime.minuteOfDay(millis, zone), schedule.minuteOfDay(millis));
+		}
+	}
+
+	/**
+	 * random timestamps before, inside and after the tabled years
+	 */
+	@Test
+	public void agreesWithTheZone() {
+		Random random = new Random(42);
+		long[] epochMillis = new long[20000];
+		long span = TimeUnit.DAYS.toMillis(365L * 300);
+		for (int i = 0; i < epochMillis.length; i++) {
+			epochMillis[i] = (long) ((random.nextDouble() - 0.4) * span);
+		}
+		for (String id : new String[] { "UTC", "Europe/Bucharest", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata", "America/Sao_Paulo" }) {
+			assertSameMinutes(TimeZone.getTimeZone(id), epochMillis);
+		}
+		assertSameMinutes(new SimpleTimeZone(2 * 3600000, "custom", 2, 1, 0, 3600000, 9, 1, 0, 3600000), epochMillis);
+	}
+
+	/**
+	 * every minute around a transition, in both directions
+	 */
+	@Test
+	public void agreesAroundTheTransitions() {
+		TimeZone zone = TimeZone.getTimeZone("Europe/Bucharest");
+		long spring = 1364691600000L; // 2013-03-31 01:00 UTC
+		long autumn = 1382835600000L; // 2013-10-27 01:00 UTC
+		long[] epochMillis = new long[4 * 120];
+		for (int i = 0; i < 120; i++) {
+			long millis = (i - 60) * 60000L;
+			epochMillis[4 * i] = spring + millis;
+			epochMillis[4 * i + 1] = autumn + millis;
+			epochMillis[4 * i + 2] = spring + millis - 1;
+			epochMillis[4 * i + 3] = autumn + millis - 1;
+		}
+		assertSameMinutes(zone, epochMillis);
+		HourSchedule schedule = new HourSchedule(zone, new HourSpan("3:00", "3:59", false));
+		assertFalse(schedule.isInside(spring - 1)); // 02:59 winter time
+		assertFalse(schedule.isInside(spring)); // 04:00 summer time, 03:00 never happened
+		assertTrue(schedule.isInside(autumn - 1)); // 03:59 summer time
+		assertTrue(schedule.isInside(autumn)); // 03:00 winter time
+	}
+}
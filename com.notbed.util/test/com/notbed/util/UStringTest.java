@@ -0,0 +1,115 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * The literal splitters give the same pieces as {@link String#split(String)}
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class UStringTest {
+
+	private static final String[] STRINGS = { "", ",", ",,", "a", "a,b", "a,,b", ",a", ",,a", "a,", "a,,", ",a,", " a , b ,  ", " , ,a", "a, ,", "  " };
+	private static final String[] SEPARATORS = { ",", ", ", ",," };
+
+	/**
+	 * @param pieces
+	 * @return
+	 */
+	private static List<String> trim(String[] pieces) {
+		List<String> trimmed = new ArrayList<String>();
+		for (String piece : pieces) {
+			trimmed.add(piece.trim());
+		}
+		return trimmed;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void splitLiteralMatchesStringSplit() {
+		for (String separator : SEPARATORS) {
+			for (String string : STRINGS) {
+				String message = "'" + string + "' on '" + separator + "'";
+				String[] expected = string.split(Pattern.quote(separator));
+				assertEquals(message, Arrays.asList(expected), UString.splitLiteral(string, separator, false, false));
+				assertEquals(message, trim(expected), UString.splitLiteral(string, separator, true, false));
+			}
+		}
+	}
+
+	/**
+	 * the trailing empty pieces are dropped, the leading ones are kept
+	 */
+	@Test
+	public void splitLiteralEdges() {
+		assertEquals(Arrays.asList("a", "b"), UString.splitLiteral("a,b,,,", ",", false, false));
+		assertEquals(Arrays.asList("", "", "a"), UString.splitLiteral(",,a", ",", false, false));
+		assertEquals(Arrays.asList(), UString.splitLiteral(",,,", ",", false, false));
+		assertEquals(Arrays.asList(""), UString.splitLiteral("", ",", false, false));
+//		a piece that is blank is not a trailing empty one, String.split keeps it
+		assertEquals(Arrays.asList("a", ""), UString.splitLiteral("a, ", ",", true, false));
+		assertEquals(Arrays.asList("a", "b"), UString.splitLiteral(" , a,, b , ", ",", true, true));
+	}
+
+	/**
+	 * the views keep every piece, the same as {@link String#split(String, int)} with a negative limit
+	 */
+	@Test
+	public void splitViewsKeepsAllThePieces() {
+		for (String separator : SEPARATORS) {
+			for (String string : STRINGS) {
+				String[] expected = string.split(Pattern.quote(separator), -1);
+				List<String> untrimmed = new ArrayList<String>();
+				for (CharSequence view : UString.splitViews(string, separator, false)) {
+					untrimmed.add(view.toString());
+				}
+				List<String> trimmed = new ArrayList<String>();
+				for (CharSequence view : UString.splitViews(string, separator, true)) {
+					trimmed.add(view.toString());
+				}
+				String message = "'" + string + "' on '" + separator + "'";
+				assertEquals(message, Arrays.asList(expected), untrimmed);
+				assertEquals(message, trim(expected), trimmed);
+			}
+		}
+	}
+
+	/**
+	 * the literal separators take the fast path, the ones with regular expression characters still behave like {@link String#split(String)}
+	 */
+	@Test
+	public void splitAndTrimMatchesStringSplit() {
+		String[] separators = { ",", ";", "ab", ".", "|", "\\|", "\\s*,\\s*", "[,;]", "a+", "$", "\\." };
+		String[] strings = { "", "a,b", " a ; b ;", "x.y.z", "x|y", " x | y |", "aab,ab,b", "a , ;b,,", "..a.", ",a,", "  " };
+		for (String separator : separators) {
+			for (String string : strings) {
+				String[] expected = trim(string.split(separator)).toArray(new String[0]);
+				assertArrayEquals("'" + string + "' on '" + separator + "'", expected, UString.splitAndTrim(string, separator));
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void breakAndTrimLinesSkipsTheEmptyLines() {
+		assertEquals(Arrays.asList("a", "b"), UString.breakAndTrimLines(" a \n\n b \n", "\n"));
+		assertEquals(Arrays.asList("a", "", "b"), UString.breakAndTrimLines(" a \n\n b \n", "\n", true));
+		assertEquals(Arrays.asList("a", "b"), UString.breakAndTrimLines("a.b", "\\."));
+		assertEquals(Arrays.asList(), UString.breakAndTrimLines(null, "\n"));
+	}
+}
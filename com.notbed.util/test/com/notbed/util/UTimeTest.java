@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.notbed.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * {@link UTime#parseMinuteOfDay(String, boolean)} accepts what the VALID_TIME_* patterns accept
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class UTimeTest {
+
+	private static final Pattern DIGITS = Pattern.compile("(\\d+)\\s*:\\s*(\\d+)\\s*([aApP]?)");
+
+	/**
+	 * @param time
+	 * @param allowSpaces
+	 * @return the minutes since midnight, worked out from the patterns, or -1 if invalid
+	 */
+	private static int expected(String time, boolean allowSpaces) {
+		String trimmed = time.trim();
+		Pattern h24 = allowSpaces ? UTime.VALID_TIME_24H : UTime.VALID_TIME_24H_NO_SPACES;
+		Pattern h12 = allowSpaces ? UTime.VALID_TIME_12H : UTime.VALID_TIME_12H_NO_SPACES;
+		if (!h24.matcher(trimmed).matches() && !h12.matcher(trimmed).matches()) {
+			return -1;
+		}
+		Matcher matcher = DIGITS.matcher(trimmed);
+		matcher.lookingAt();
+		int hour = Integer.parseInt(matcher.group(1));
+		int minute = Integer.parseInt(matcher.group(2));
+		String ap = matcher.group(3).toLowerCase();
+		if (ap.equals("a") && hour == 12) {
+			hour = 0;
+		} else if (ap.equals("p") && hour < 12) {
+			hour += 12;
+		}
+		return hour * 60 + minute;
+	}
+
+	/**
+	 * @param time
+	 * @param allowSpaces
+	 * @return the minutes since midnight or -1 if invalid
+	 */
+	private static int parse(String time, boolean allowSpaces) {
+		try {
+			return UTime.parseMinuteOfDay(time, allowSpaces);
+		} catch (IllegalStateException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void examples() {
+		assertEquals(9 * 60 + 30, UTime.parseMinuteOfDay("9:30", false));
+		assertEquals(9 * 60 + 30, UTime.parseMinuteOfDay("09 : 30", true));
+		assertEquals(-1, parse("09 : 30", false));
+		assertEquals(12 * 60 + 45, UTime.parseMinuteOfDay("12:45pm", false));
+		assertEquals(45, UTime.parseMinuteOfDay("12:45AM", false));
+		assertEquals(13 * 60 + 5, UTime.parseMinuteOfDay(" 1 : 05 pm ", true));
+		assertEquals(23 * 60 + 59, UTime.parseMinuteOfDay("23:59", false));
+		assertEquals(0, UTime.parseMinuteOfDay("00:00", false));
+		for (String invalid : new String[] { "", "24:00", "9:60", "9:5", "930", "13:00pm", "0:30am", "10:30 pm", "9 :30", "9:30p", "9:30pmx", "a9:30", "9::30" }) {
+			assertEquals("'" + invalid + "'", -1, parse(invalid, false));
+		}
+		for (String invalid : new String[] { "", "9  :30", "9:30  pm", "9 : 30pm ;", "09:30 p m" }) {
+			assertEquals("'" + invalid + "'", -1, parse(invalid, true));
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void noTimeIsAnIllegalArgument() {
+		try {
+			UTime.parseMinuteOfDay(null, true);
+			fail("There is no time");
+		} catch (IllegalArgumentException e) {
+			assertEquals("No time provided!", e.getMessage());
+		}
+	}
+
+	/**
+	 * every combination of hours, minutes, spaces and suffixes, the parser and the patterns must agree
+	 */
+	@Test
+	public void agreesWithThePatterns() {
+		List<String> hours = new ArrayList<String>();
+		for (int hour = 0; hour <= 25; hour++) {
+			hours.add(String.valueOf(hour));
+			hours.add(String.format("%02d", hour));
+		}
+		hours.add("123");
+		String[] minutes = { "00", "05", "30", "59", "60", "99", "5", "005" };
+		String[] spaces = { "", " ", "  " };
+		String[] suffixes = { "", "am", "PM", "pM", "Am", "a", "pmm", "xm" };
+		int checked = 0;
+		for (String hour : hours) {
+			for (String minute : minutes) {
+				for (String before : spaces) {
+					for (String after : spaces) {
+						for (String suffix : suffixes) {
+							for (String beforeSuffix : spaces) {
+								String time = hour + before + ":" + after + minute + (suffix.isEmpty() ? "" : beforeSuffix + suffix);
+								for (boolean allowSpaces : new boolean[] { false, true }) {
+									assertEquals("'" + time + "' spaces " + allowSpaces, expected(time, allowSpaces), parse(time, allowSpaces));
+									checked++;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		assertEquals(hours.size() * minutes.length * 3 * 3 * 8 * 3 * 2, checked);
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * The loads go to an executor that only queues them, so the test decides when they run
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class AsyncAIMapTest {
+
+	private final BlockingQueue<Runnable> queued = new LinkedBlockingQueue<Runnable>();
+	private final Executor executor = new Executor() {
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+		 */
+		@Override
+		public void execute(Runnable command) {
+			queued.add(command);
+		}
+	};
+	private final AtomicInteger loads = new AtomicInteger();
+	private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+	/**
+	 * upper cases the keys, fails on "bad", loads "none" as null
+	 */
+	private final IEvaluatorWithException<String, String> loader = new IEvaluatorWithException<String, String>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IEvaluatorWithException#evaluate(java.lang.Object)
+		 */
+		@Override
+		public String evaluate(String obj) throws Exception {
+			loads.incrementAndGet();
+			if ("bad".equals(obj)) {
+				throw new Exception("Cannot load bad");
+			}
+			return "none".equals(obj) ? null : obj.toUpperCase();
+		}
+	};
+
+	/**
+	 * upper cases the keys, leaves "none" out of the result
+	 */
+	private final IEvaluatorWithException<Collection<String>, Map<String, String>> bulkLoader = new IEvaluatorWithException<Collection<String>, Map<String, String>>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IEvaluatorWithException#evaluate(java.lang.Object)
+		 */
+		@Override
+		public Map<String, String> evaluate(Collection<String> keys) {
+			batches.add(new ArrayList<String>(keys));
+			Map<String, String> values = new HashMap<String, String>();
+			for (String key : keys) {
+				if (!"none".equals(key)) {
+					values.put(key, key.toUpperCase());
+				}
+			}
+			return values;
+		}
+	};
+
+	/**
+	 * @return how many tasks ran
+	 */
+	private int runQueued() {
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		queued.drainTo(tasks);
+		for (Runnable task : tasks) {
+			task.run();
+		}
+		return tasks.size();
+	}
+
+	/**
+	 * waits for the window timer to hand the batch to the executor
+	 * @throws InterruptedException
+	 */
+	private void runNextQueued() throws InterruptedException {
+		Runnable task = queued.poll(10, TimeUnit.SECONDS);
+		assertNotNull("The batch was not sent", task);
+		task.run();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void concurrentMissesShareOneLoad() {
+		AsyncAIMap<String, String> map = AsyncAIMap.create(loader, executor);
+		CompletableFuture<String> first = map.get("a");
+		CompletableFuture<String> second = map.get("a");
+		assertEquals(1, runQueued());
+		assertEquals("A", first.join());
+		assertEquals("A", second.join());
+		assertEquals("A", map.get("a").join());
+		assertEquals(0, runQueued());
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * a caller cancelling its future doesn't cancel the load for the others nor the value kept for the key
+	 */
+	@Test
+	public void cancelledCallerDoesNotPoisonTheKey() {
+		AsyncAIMap<String, String> map = AsyncAIMap.create(loader, executor);
+		CompletableFuture<String> cancelled = map.get("a");
+		assertTrue(cancelled.cancel(true));
+		CompletableFuture<String> waiting = map.get("a");
+		runQueued();
+		assertTrue(cancelled.isCancelled());
+		assertEquals("A", waiting.join());
+		assertEquals("A", map.getIfPresent("a"));
+		assertEquals("A", map.get("a").join());
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void failedAndNullLoadsAreNotKept() {
+		AsyncAIMap<String, String> map = AsyncAIMap.create(loader, executor);
+		CompletableFuture<String> bad = map.get("bad");
+		CompletableFuture<String> none = map.get("none");
+		runQueued();
+		try {
+			bad.join();
+			fail("The load failed");
+		} catch (CompletionException e) {
+			assertEquals("Cannot load bad", e.getCause().getMessage());
+		}
+		assertNull(none.join());
+		assertEquals(0, map.size());
+		map.get("bad");
+		map.get("none");
+		assertEquals("both are loaded again", 2, runQueued());
+		assertEquals(4, loads.get());
+	}
+
+	/**
+	 * the misses of single gets and of getAll arriving within the window go to one bulk loader call
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void missesWithinTheWindowAreLoadedTogether() throws InterruptedException {
+		AsyncAIMap<String, String> map = AsyncAIMap.createBatching(bulkLoader, executor, 500, TimeUnit.MILLISECONDS, 100);
+		CompletableFuture<String> a = map.get("a");
+		CompletableFuture<String> b = map.get("b");
+		CompletableFuture<String> again = map.get("a");
+		CompletableFuture<Map<String, String>> all = map.getAll(Arrays.asList("b", "c", "none"));
+		assertTrue(queued.isEmpty());
+		runNextQueued();
+		assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c", "none")), batches);
+		assertEquals("A", a.join());
+		assertEquals("B", b.join());
+		assertEquals("A", again.join());
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("b", "B");
+		expected.put("c", "C");
+		assertEquals(expected, all.join());
+		assertEquals("the key left out of the result is not kept", 3, map.size());
+	}
+
+	/**
+	 * a batch is sent as soon as it is full, the keys left over wait for the window
+	 */
+	@Test
+	public void fullBatchesAreSentRightAway() {
+		AsyncAIMap<String, String> map = AsyncAIMap.createBatching(bulkLoader, executor, 1, TimeUnit.HOURS, 3);
+		List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+		for (String key : Arrays.asList("k1", "k2", "k3", "k4")) {
+			futures.add(map.get(key));
+		}
+		map.getAll(Arrays.asList("k5", "k6", "k7"));
+		assertEquals(2, runQueued());
+		assertEquals(Arrays.asList(Arrays.asList("k1", "k2", "k3"), Arrays.asList("k4", "k5", "k6")), batches);
+		for (CompletableFuture<String> future : futures) {
+			assertTrue(future.isDone());
+		}
+		assertNull("k7 waits for the window", map.getIfPresent("k7"));
+		assertTrue(queued.isEmpty());
+	}
+}
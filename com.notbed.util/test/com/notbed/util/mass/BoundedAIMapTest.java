@@ -0,0 +1,176 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class BoundedAIMapTest {
+
+	private static final IEvaluator<Integer, String> TO_STRING = new IEvaluator<Integer, String>() {
+
+		/* (non-Javadoc)
+		 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+		 */
+		@Override
+		public String evaluate(Integer obj) {
+			return String.valueOf(obj);
+		}
+	};
+
+	/**
+	 * @param maximumSize
+	 * @param policy
+	 * @return
+	 */
+	private static BoundedAIMap<Integer, String, Integer, String> map(int maximumSize, EvictionPolicy policy) {
+		return BoundedAIMap.create(maximumSize, policy, TO_STRING);
+	}
+
+	/**
+	 * @param map
+	 * @param keys
+	 */
+	private static void get(BoundedAIMap<Integer, String, Integer, String> map, Integer... keys) {
+		for (Integer key : keys) {
+			assertEquals(String.valueOf(key), map.get(key));
+		}
+	}
+
+	/**
+	 * @param map
+	 * @param keys
+	 */
+	private static void assertKeys(BoundedAIMap<Integer, String, Integer, String> map, Integer... keys) {
+		assertEquals(new HashSet<Integer>(Arrays.asList(keys)), new HashSet<Integer>(map.keySet()));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void lruEvictsTheLeastRecentlyUsed() {
+		BoundedAIMap<Integer, String, Integer, String> map = map(3, EvictionPolicy.LRU);
+		get(map, 1, 2, 3, 1);
+		get(map, 4);
+		assertKeys(map, 1, 3, 4);
+		get(map, 5);
+		assertKeys(map, 1, 4, 5);
+		get(map, 4, 6);
+		assertKeys(map, 4, 5, 6);
+		assertEquals(3, map.getEvictionCount());
+		assertEquals(2, map.getHitCount());
+		assertEquals(6, map.getMissCount());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void lfuEvictsTheLeastFrequentlyUsedThenTheOldest() {
+		BoundedAIMap<Integer, String, Integer, String> map = map(3, EvictionPolicy.LFU);
+		get(map, 1, 2, 3, 1, 1, 3);
+		get(map, 4);
+		assertKeys(map, 1, 3, 4); // 2 was used once
+		get(map, 5);
+		assertKeys(map, 1, 3, 5); // 4 and 5 were used once, 4 is older
+		get(map, 5, 5, 5, 3, 6);
+		assertKeys(map, 1, 3, 5); // 6 is the least frequently used as soon as it is added
+		assertEquals(3, map.getEvictionCount());
+	}
+
+	/**
+	 * the hot keys survive a scan of keys used once, under LRU the same scan flushes them
+	 */
+	@Test
+	public void tinyLfuKeepsHotKeysThroughAScan() {
+		BoundedAIMap<Integer, String, Integer, String> tinyLfu = map(100, EvictionPolicy.TINY_LFU);
+		BoundedAIMap<Integer, String, Integer, String> lru = map(100, EvictionPolicy.LRU);
+		for (BoundedAIMap<Integer, String, Integer, String> map : Arrays.asList(tinyLfu, lru)) {
+			for (int key = 0; key < 100; key++) {
+				get(map, key);
+			}
+			for (int round = 0; round < 3; round++) {
+				for (int key = 0; key < 50; key++) {
+					get(map, key);
+				}
+			}
+			for (int key = 1000; key < 1300; key++) {
+				get(map, key);
+			}
+			assertEquals(100, map.size());
+		}
+		for (int key = 0; key < 50; key++) {
+			assertTrue("hot key " + key + " was evicted", tinyLfu.containsKey(key));
+			assertFalse("hot key " + key + " survived under LRU", lru.containsKey(key));
+		}
+	}
+
+	/**
+	 * a new key that keeps being asked for replaces the oldest cold entry of the main space
+	 */
+	@Test
+	public void tinyLfuAdmitsAKeyThatBecomesFrequent() {
+		BoundedAIMap<Integer, String, Integer, String> map = map(100, EvictionPolicy.TINY_LFU);
+		for (int key = 0; key < 100; key++) {
+			get(map, key);
+		}
+		Set<Integer> before = new HashSet<Integer>(map.keySet());
+		for (int round = 0; round < 5; round++) {
+			get(map, 500, 2000 + round); // the second key pushes 500 out of the admission window
+		}
+		assertTrue(map.containsKey(500));
+		before.removeAll(map.keySet());
+//		99 left the window used once and lost against 0, the oldest probation entry, 500 won once it was seen twice
+		assertEquals(new HashSet<Integer>(Arrays.asList(0, 99)), before);
+		assertEquals(100, map.size());
+	}
+
+	/**
+	 * the weights of the values bound the map, not their number
+	 */
+	@Test
+	public void weightedMapEvictsUntilTheWeightFits() {
+		BoundedAIMap<Integer, String, Integer, String> map = new BoundedAIMap<Integer, String, Integer, String>(10, new IEvaluator<String, Integer>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+			 */
+			@Override
+			public Integer evaluate(String obj) {
+				return obj.length();
+			}
+		}, EvictionPolicy.LRU, TO_STRING);
+		get(map, 1, 22, 333, 4444);
+		assertEquals(10, map.getWeightedSize());
+		get(map, 55);
+		assertKeys(map, 333, 4444, 55);
+		assertEquals(9, map.getWeightedSize());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void dropCacheEmptiesTheMap() {
+		BoundedAIMap<Integer, String, Integer, String> map = map(3, EvictionPolicy.TINY_LFU);
+		get(map, 1, 2, 3);
+		map.dropCache();
+		assertTrue(map.isEmpty());
+		assertEquals(0, map.getWeightedSize());
+		get(map, 1, 2, 3, 4);
+		assertEquals(3, map.size());
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class ConcurrentAIMapTest {
+
+	private static final int THREADS = 16;
+
+	private ExecutorService executor;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	@After
+	public void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * all the threads ask for the same keys at the same time, every key must be initialized once
+	 * @throws Exception
+	 */
+	@Test
+	public void initializesEveryKeyOnceUnderContention() throws Exception {
+		final ConcurrentHashMap<Integer, AtomicInteger> calls = new ConcurrentHashMap<Integer, AtomicInteger>();
+		final ConcurrentAIMap<Integer, String, Integer, String> map = new ConcurrentAIMap<Integer, String, Integer, String>(
+				new IEvaluator<Integer, String>() {
+
+					/* (non-Javadoc)
+					 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+					 */
+					@Override
+					public String evaluate(Integer obj) {
+						AtomicInteger count = new AtomicInteger();
+						AtomicInteger existing = calls.putIfAbsent(obj, count);
+						(existing == null ? count : existing).incrementAndGet();
+						Thread.yield(); // widen the window for a second initialization
+						return "v" + obj;
+					}
+				});
+		final int keys = 200;
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(new Callable<Void>() {
+
+				/* (non-Javadoc)
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					for (int key = 0; key < keys; key++) {
+						assertEquals("v" + key, map.get(key));
+					}
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Void> result : results) {
+			result.get(30, TimeUnit.SECONDS);
+		}
+		assertEquals(keys, map.size());
+		assertEquals(keys, calls.size());
+		for (AtomicInteger count : calls.values()) {
+			assertEquals(1, count.get());
+		}
+	}
+
+	/**
+	 * a thread asking for another key is not blocked by a slow initialization
+	 * @throws Exception
+	 */
+	@Test
+	public void slowKeyDoesNotBlockOtherKeys() throws Exception {
+		final CountDownLatch slowStarted = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ConcurrentAIMap<String, String, String, String> map = new ConcurrentAIMap<String, String, String, String>(
+				new IEvaluator<String, String>() {
+
+					/* (non-Javadoc)
+					 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+					 */
+					@Override
+					public String evaluate(String obj) {
+						if ("slow".equals(obj)) {
+							slowStarted.countDown();
+							try {
+								release.await();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return obj.toUpperCase();
+					}
+				});
+		Future<String> slow = executor.submit(new Callable<String>() {
+
+			/* (non-Javadoc)
+			 * @see java.util.concurrent.Callable#call()
+			 */
+			@Override
+			public String call() {
+				return map.get("slow");
+			}
+		});
+		assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+		Future<String> fast = executor.submit(new Callable<String>() {
+
+			/* (non-Javadoc)
+			 * @see java.util.concurrent.Callable#call()
+			 */
+			@Override
+			public String call() {
+				return map.get("fast");
+			}
+		});
+		assertEquals("FAST", fast.get(10, TimeUnit.SECONDS));
+		release.countDown();
+		assertEquals("SLOW", slow.get(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * a failed initialization is not cached, the waiting callers see the failure and the next call tries again
+	 */
+	@Test
+	public void failureIsNotCached() {
+		final AtomicInteger calls = new AtomicInteger();
+		ConcurrentAIMap<String, String, String, String> map = new ConcurrentAIMap<String, String, String, String>(
+				new IEvaluator<String, String>() {
+
+					/* (non-Javadoc)
+					 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+					 */
+					@Override
+					public String evaluate(String obj) {
+						if (calls.incrementAndGet() == 1) {
+							throw new IllegalStateException("first call fails");
+						}
+						return obj;
+					}
+				});
+		try {
+			map.get("a");
+			fail("The initializer failure must be thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("first call fails", e.getMessage());
+		}
+		assertEquals("a", map.get("a"));
+		assertEquals(2, calls.get());
+	}
+
+	/**
+	 * null values are returned but not stored, put values are not initialized again
+	 */
+	@Test
+	public void nullValuesAreNotStored() {
+		ConcurrentAIMap<String, String, String, String> map = new ConcurrentAIMap<String, String, String, String>(
+				new IEvaluator<String, String>() {
+
+					/* (non-Javadoc)
+					 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+					 */
+					@Override
+					public String evaluate(String obj) {
+						return null;
+					}
+				});
+		assertNull(map.get("a"));
+		assertTrue(map.isEmpty());
+		String value = "put";
+		map.put("b", value);
+		assertSame(value, map.get("b"));
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The refreshes go to an executor that only queues them, so the test decides when they run
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class ExpiringAIMapTest {
+
+	private static final long REFRESH_MILLIS = 20;
+
+	private final List<Runnable> queued = new ArrayList<Runnable>();
+	private final AtomicInteger loads = new AtomicInteger();
+	private final AtomicBoolean failing = new AtomicBoolean();
+	private final AtomicBoolean rejecting = new AtomicBoolean();
+	private ExpiringAIMap<String, String, String, String> map;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		IEvaluator<String, String> initializer = new IEvaluator<String, String>() {
+
+			/* (non-Javadoc)
+			 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+			 */
+			@Override
+			public String evaluate(String obj) {
+				if (failing.get()) {
+					throw new IllegalStateException("Database is down");
+				}
+				return obj + loads.incrementAndGet();
+			}
+		};
+		Executor executor = new Executor() {
+
+			/* (non-Javadoc)
+			 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+			 */
+			@Override
+			public void execute(Runnable command) {
+				if (rejecting.get()) {
+					throw new RejectedExecutionException("Shut down");
+				}
+				queued.add(command);
+			}
+		};
+		map = new ExpiringAIMap<String, String, String, String>(initializer, 0, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS, executor);
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	private static void waitForRefreshAge() throws InterruptedException {
+		Thread.sleep(REFRESH_MILLIS * 2);
+	}
+
+	/**
+	 *
+	 */
+	private void runQueued() {
+		List<Runnable> tasks = new ArrayList<Runnable>(queued);
+		queued.clear();
+		for (Runnable task : tasks) {
+			task.run();
+		}
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void servesTheStaleValueWhileOneRefreshRuns() throws InterruptedException {
+		assertEquals("a1", map.get("a"));
+		assertTrue(queued.isEmpty());
+		waitForRefreshAge();
+		assertEquals("a1", map.get("a"));
+		assertEquals("a1", map.get("a"));
+		assertEquals("only one refresh per stale entry", 1, queued.size());
+		runQueued();
+		assertEquals("a2", map.get("a"));
+		assertTrue(queued.isEmpty());
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void failedRefreshKeepsTheValueAndIsRetried() throws InterruptedException {
+		assertEquals("a1", map.get("a"));
+		waitForRefreshAge();
+		failing.set(true);
+		assertEquals("a1", map.get("a"));
+		assertEquals(1, queued.size());
+		runQueued(); // fails, logged
+		assertEquals("a1", map.get("a"));
+		assertEquals("the refreshing flag must be dropped after a failure", 1, queued.size());
+		failing.set(false);
+		runQueued();
+		assertEquals("a2", map.get("a"));
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void rejectedRefreshIsRetriedOnTheNextRead() throws InterruptedException {
+		assertEquals("a1", map.get("a"));
+		waitForRefreshAge();
+		rejecting.set(true);
+		assertEquals("a1", map.get("a"));
+		assertTrue(queued.isEmpty());
+		rejecting.set(false);
+		assertEquals("a1", map.get("a"));
+		assertEquals(1, queued.size());
+	}
+
+	/**
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void expiredEntriesAreLoadedAgain() throws InterruptedException {
+		ExpiringAIMap<String, String, String, String> expiring = new ExpiringAIMap<String, String, String, String>(
+				new IEvaluator<String, String>() {
+
+					/* (non-Javadoc)
+					 * @see com.notbed.util.mass.IEvaluator#evaluate(java.lang.Object)
+					 */
+					@Override
+					public String evaluate(String obj) {
+						return obj + loads.incrementAndGet();
+					}
+				}, REFRESH_MILLIS, 0, TimeUnit.MILLISECONDS);
+		assertEquals("a1", expiring.get("a"));
+		assertEquals("a1", expiring.get("a"));
+		waitForRefreshAge();
+		assertFalse(expiring.containsKey("a"));
+		assertEquals("a2", expiring.get("a"));
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ */
+package com.notbed.util.mass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * {@link IntObjectMap} and {@link LongObjectMap} against a {@link HashMap} fed the same operations
+ * @author Alexandru Bledea
+ * @since Dec 24, 2013
+ */
+public class OpenAddressingTest {
+
+	private static final int OPERATIONS = 200000;
+
+	/**
+	 *
+	 */
+	@Test
+	public void intMapBehavesLikeAHashMap() {
+		Random random = new Random(42);
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>(4);
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		for (int op = 0; op < OPERATIONS; op++) {
+			int key = random.nextInt(2000) - 1000; // the free key 0 included
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				assertEquals(expected.put(key, op), map.put(key, op));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int key = -1000; key < 1000; key++) {
+			assertEquals(expected.get(key), map.get(key));
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+		}
+		assertEquals(expected.size(), map.keys().length);
+	}
+
+	/**
+	 * the keys differ only in the high half, they must not collapse into one chain
+	 */
+	@Test
+	public void longMapBehavesLikeAHashMap() {
+		Random random = new Random(42);
+		LongObjectMap<Integer> map = new LongObjectMap<Integer>(4);
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		for (int op = 0; op < OPERATIONS; op++) {
+			long key = (long) (random.nextInt(2000) - 1000) << 32;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				assertEquals(expected.put(key, op), map.put(key, op));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (long key = -1000; key < 1000; key++) {
+			assertEquals(expected.get(key << 32), map.get(key << 32));
+		}
+		assertEquals(expected.size(), map.keys().length);
+	}
+
+	/**
+	 * the table at the maximum capacity keeps the load factor and refuses new keys instead of growing
+	 */
+	@Test
+	public void fullTableAtMaximumCapacityIsRefused() {
+		assertTrue(OpenAddressing.canGrow(OpenAddressing.MAX_CAPACITY >> 1));
+		assertFalse(OpenAddressing.canGrow(OpenAddressing.MAX_CAPACITY));
+		int resizeAt = OpenAddressing.resizeAt(OpenAddressing.MAX_CAPACITY);
+		assertEquals(OpenAddressing.MAX_CAPACITY / 4 * 3, resizeAt);
+		OpenAddressing.checkRoom(resizeAt - 1, resizeAt);
+		try {
+			OpenAddressing.checkRoom(resizeAt, resizeAt);
+			fail("The table is full");
+		} catch (IllegalStateException e) {
+			assertEquals("Map is full", e.getMessage());
+		}
+		assertEquals(OpenAddressing.MAX_CAPACITY, OpenAddressing.tableSize(Integer.MAX_VALUE));
+		assertEquals(16, OpenAddressing.tableSize(10));
+	}
+}